@@ -14,13 +14,25 @@
 
 package trace_alignment;
 
+import trace_alignment.alignment.Alignment;
+import trace_alignment.alignment.AlignmentEngine;
+import trace_alignment.alignment.AlignmentWriter;
+import trace_alignment.alignment.ConformanceFilter;
 import trace_alignment.automaton.*;
 import trace_alignment.encodings.*;
+import trace_alignment.parsing.ActivityNormalizer;
+import trace_alignment.parsing.LogStreamReader;
 import trace_alignment.parsing.ParseLog;
 import trace_alignment.parsing.ParseLydiaDFA;
+import trace_alignment.planner.PlannerResult;
+import trace_alignment.planner.PlannerRunner;
+import trace_alignment.utils.ActivityClasses;
+import trace_alignment.utils.AlphabetComponents;
 import trace_alignment.utils.CombinationOfStates;
 import trace_alignment.utils.Combinations;
 import trace_alignment.utils.Trace;
+import trace_alignment.utils.TraceProjection;
+import trace_alignment.utils.TraceVariants;
 import org.apache.commons.io.FileUtils;
 
 import org.apache.logging.log4j.LogManager;
@@ -34,10 +46,14 @@ import picocli.CommandLine;
 import picocli.CommandLine.*;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Command(name = "Planning-Trace-Alignment", mixinStandardHelpOptions = true, version = "Planning-Trace-Alignment v0.0.1",
         description = "Planning-Trace-Alignment aligns log trace using Automated Planning techniques.", sortOptions = false,
@@ -50,7 +66,8 @@ public class App implements Runnable {
         GENERAL_CONJ,
         GENERAL_SHARE,
         GENERAL_CONJ_SHARE,
-        STRIPS_CONJ;
+        STRIPS_CONJ,
+        GENERAL_WILDCARD;
 
         public static Encoding get(int x) {
             switch (x) {
@@ -64,6 +81,8 @@ public class App implements Runnable {
                     return GENERAL_CONJ_SHARE;
                 case 4:
                     return STRIPS_CONJ;
+                case 5:
+                    return GENERAL_WILDCARD;
             }
             return null;
         }
@@ -87,13 +106,158 @@ public class App implements Runnable {
     @Option(order = 3, names = {"-e", "--encoding"}, defaultValue = "0", arity = "1", paramLabel = "ENCODING",
             description = "The PDDL encoding type.%n0: General%n1: General with Conjunctive Goals%n2: General " +
                     "with Shared States%n3: General with Conjunctive Goals and Shared States%n4: Strips with " +
-                    "Conjunctive Goals")
+                    "Conjunctive Goals%n5: General with a single wildcard transition for the activities outside " +
+                    "the alphabet of each constraint")
     private int e;
 
     @Option(order = 5, names = {"-o", "--output"}, defaultValue = "./output/", paramLabel = "OUT",
             description = "Path to the output folder.")
     private String output_location;
 
+    @Option(order = 6, names = {"-v", "--variants"}, defaultValue = "false",
+            description = "Compile one problem per trace variant (distinct activity sequence) and write the " +
+                    "trace-to-variant mapping to variants.tsv.")
+    private boolean variants;
+
+    @Option(order = 7, names = {"-t", "--threads"}, defaultValue = "1", paramLabel = "N",
+            description = "Number of worker threads used to compile the traces.")
+    private int threads;
+
+    @Option(order = 8, names = {"-s", "--stream"}, defaultValue = "false",
+            description = "Read the log trace by trace with a streaming parser instead of loading it with OpenXES.")
+    private boolean stream;
+
+    @Option(order = 9, names = {"-c", "--cache"}, paramLabel = "DIR",
+            description = "Directory of the persistent cache of Lydia DFAs. Disabled if not set.")
+    private String cache_location;
+
+    @Option(order = 10, names = {"-j", "--lydia-jobs"}, defaultValue = "1", paramLabel = "N",
+            description = "Number of Lydia processes translating formulas concurrently.")
+    private int lydia_jobs;
+
+    @Option(order = 11, names = {"--lydia-timeout"}, defaultValue = "0", paramLabel = "SEC",
+            description = "Timeout in seconds for the translation of each formula, 0 for no timeout.")
+    private long lydia_timeout;
+
+    @Option(order = 12, names = {"-g", "--global-alphabet"}, defaultValue = "false",
+            description = "Collect the whole log alphabet first and instantiate the constraint automata once, " +
+                    "sharing them across all traces.")
+    private boolean global_alphabet;
+
+    @Option(order = 13, names = {"--planner"}, paramLabel = "CMD",
+            description = "Planner command run on each compiled problem, with {domain}, {problem} and {plan} " +
+                    "placeholders. Arguments may be quoted as in a shell. Plans are written to OUT/plans and results to " +
+                    "OUT/results.csv.")
+    private String planner_command;
+
+    @Option(order = 14, names = {"--planner-jobs"}, defaultValue = "1", paramLabel = "N",
+            description = "Number of planner processes running concurrently.")
+    private int planner_jobs;
+
+    @Option(order = 15, names = {"--planner-timeout"}, defaultValue = "0", paramLabel = "SEC",
+            description = "Time limit in seconds of each planner run, 0 for no limit.")
+    private long planner_timeout;
+
+    @Option(order = 16, names = {"--planner-memory"}, defaultValue = "0", paramLabel = "MB",
+            description = "Memory limit in MB of each planner run, 0 for no limit.")
+    private long planner_memory;
+
+    @Option(order = 17, names = {"--native"}, defaultValue = "false",
+            description = "Align the traces with the built-in A* engine instead of compiling them to PDDL.")
+    private boolean native_alignment;
+
+    @Option(order = 18, names = {"--alignments"}, paramLabel = "FILE",
+            description = "Write the alignment of each trace to FILE, as JSON lines if it ends with .jsonl and as " +
+                    "CSV otherwise. Alignments come from --native or --planner. Default with --native: " +
+                    "OUT/alignments.csv")
+    private File alignments_file;
+
+    @Option(order = 19, names = {"--archive"}, defaultValue = "false",
+            description = "Append all the problems to a few segment files OUT/problems-N.dat, indexed by " +
+                    "OUT/problems.idx, instead of writing one file per problem.")
+    private boolean archive_output;
+
+    @Option(order = 20, names = {"--prefilter"}, defaultValue = "false",
+            description = "Replay every trace through the constraint automata first. Traces satisfying all the " +
+                    "constraints are aligned with cost 0 right away, in the --alignments file (OUT/conforming.csv " +
+                    "without it), and no problem is compiled for them.")
+    private boolean prefilter;
+
+    @Option(order = 21, names = {"--minimize"}, defaultValue = "false",
+            description = "Minimize the constraint automata before instantiating them: unreachable states are " +
+                    "dropped and equivalent states merged.")
+    private boolean minimize;
+
+    @Option(order = 22, names = {"--product"}, defaultValue = "false",
+            description = "Replace the constraint automata by their minimized synchronous product, unless it " +
+                    "exceeds --product-max-states states.")
+    private boolean product;
+
+    @Option(order = 23, names = {"--product-max-states"}, defaultValue = "10000", paramLabel = "N",
+            description = "Largest product computed with --product before falling back to separate automata.")
+    private int product_max_states;
+
+    @Option(order = 24, names = {"--activity-classes"}, defaultValue = "false",
+            description = "Compile the traces over one representative per class of activities behaving the same in " +
+                    "every constraint automaton. Ignored with --native, and when --decompose splits the constraints.")
+    private boolean activity_classes;
+
+    @Option(order = 25, names = {"--project"}, defaultValue = "false",
+            description = "Drop the events of the activities outside every constraint alphabet when they never " +
+                    "change any constraint automaton. With --variants, traces with the same projection are " +
+                    "aligned once.")
+    private boolean project;
+
+    @Option(order = 26, names = {"--decompose"}, defaultValue = "false",
+            description = "Split the constraints into components with disjoint alphabets and compile one problem " +
+                    "p-N-cK per trace and component K, on the trace projected onto the alphabet of the component. " +
+                    "The alignment of a trace merges those of its components.")
+    private boolean decompose;
+
+    private final Set<AutomatonTemplate> templates = new HashSet<>();
+    private final HashSet<String> activitiesRepo = new HashSet<>();
+    private final ActivityNormalizer normalizer = new ActivityNormalizer();
+    /* one PDDL writer, and its buffer, per compiling thread */
+    private final ThreadLocal<PddlWriter> pddlWriter = ThreadLocal.withInitial(PddlWriter::new);
+    private ProblemArchive problemArchive;
+    private ConformanceFilter conformanceFilter;
+    /* the --alignments of the run, shared by the prefilter and the planner */
+    private AlignmentWriter alignmentWriter;
+    private AlignmentWriter conformingWriter;
+    private List<CombinationOfStates> combStates;
+    private Set<Automaton<String>> constraintAutomata;
+    private StripsDomainCore stripsCore;
+    private PddlFragments problemFragments;
+    private Set<Automaton<String>> wildcardAutomata;
+    private TraceVariants traceVariants;
+    private final List<String> traceNames = new ArrayList<>();
+    private ActivityClasses activityClasses;
+    private HashSet<String> classActivities;
+    private final List<List<String>> traceEvents = new ArrayList<>();
+    private TraceProjection traceProjection;
+    /* the events of the traces of each variant, when they were projected */
+    private final List<List<List<String>>> variantEvents = new ArrayList<>();
+    private AlphabetComponents components;
+    private List<ComponentProblem> componentProblems;
+    /* the plans of the components of each trace (or variant) until all of them are in */
+    private final Map<Integer, List<PlannerResult>> componentResults = new HashMap<>();
+
+    /*
+     * The constraints of one component, instantiated once over the alphabet of the component.
+     */
+    private static final class ComponentProblem {
+        private final HashSet<String> activities;
+        private final Set<Automaton<String>> automata;
+        private List<CombinationOfStates> combStates = new ArrayList<>();
+        private StripsDomainCore stripsCore;
+        private PddlFragments fragments;
+
+        private ComponentProblem(HashSet<String> activities, Set<Automaton<String>> automata) {
+            this.activities = activities;
+            this.automata = automata;
+        }
+    }
+
     public void run() {
         if (log_file.exists() && formulas_file.exists()) {
             try {
@@ -102,35 +266,75 @@ public class App implements Runnable {
                     FileUtils.deleteDirectory(directory);
                 }
                 directory.mkdirs();
-                // parsing the whole log
-                if (!quiet) {
-                    logger.info(String.format("Parsing %s ...", log_file.toPath()));
-                }
                 final long t_log_start = System.currentTimeMillis();
-                XLog log = ParseLog.openLog(log_file.toString());
-                final long t_log_end = System.currentTimeMillis();
-                if (!quiet) {
-                    logger.info(String.format("Parsing done in: %d ms", t_log_end - t_log_start));
+                XLog log = null;
+                if (!stream) {
+                    // parsing the whole log
+                    if (!quiet) {
+                        logger.info(String.format("Parsing %s ...", log_file.toPath()));
+                    }
+                    log = ParseLog.openLog(log_file.toString());
+                    final long t_log_end = System.currentTimeMillis();
+                    if (!quiet) {
+                        logger.info(String.format("Parsing done in: %d ms", t_log_end - t_log_start));
+                    }
                 }
                 // parsing formulas and build automaton templates
                 if (!quiet) {
                     logger.info(String.format("Compute constraint automata for formulas in %s ...", formulas_file.toPath()));
                 }
                 final long t_automata_start = System.currentTimeMillis();
-                Set<AutomatonTemplate> templates = new HashSet<>();
-                try (Stream<String> lines = Files.lines(formulas_file.toPath())) {
-                    for (String line : (Iterable<String>) lines::iterator) {
-                        String automaton_print;
-                        if (ldlf) {
-                            automaton_print = LydiaAutomaton.callLydia(line, false);
-                        } else {
-                                automaton_print = LydiaAutomaton.callLydia(line, true);
+                LydiaCache cache = cache_location == null ? null : new LydiaCache(new File(cache_location));
+                List<String> formulas = Files.readAllLines(formulas_file.toPath());
+                List<AutomatonTemplate> parsed;
+                if (cache == null) {
+                    // DFAs are parsed straight from the output of Lydia
+                    parsed = LydiaAutomaton.translate(formulas, !ldlf, lydia_jobs, lydia_timeout);
+                } else {
+                    parsed = this.translateCached(cache, formulas);
+                }
+                for (AutomatonTemplate template : parsed) {
+                    this.templates.add(minimize ? template.minimize() : template);
+                }
+                if (cache != null && !quiet) {
+                    logger.info(String.format("DFA cache: %d hits, %d misses", cache.getHits(), cache.getMisses()));
+                }
+                if (product && this.templates.size() > 1) {
+                    this.computeProduct();
+                }
+                this.templates.forEach(t -> this.activitiesRepo.addAll(t.getAlphabet()));
+                if (prefilter) {
+                    // before any STRIPS instantiation trims the templates
+                    this.conformanceFilter = new ConformanceFilter(this.templates);
+                }
+                if (decompose) {
+                    // before any STRIPS instantiation trims the templates
+                    AlphabetComponents c = new AlphabetComponents(this.templates);
+                    if (!c.isIndependent()) {
+                        logger.warn("Some constraint automaton moves on the activities outside its alphabet, the " +
+                                "constraints are not decomposed.");
+                    } else if (c.size() > 1) {
+                        this.components = c;
+                        if (!quiet) {
+                            logger.info(String.format("%d constraints decomposed into %d independent components",
+                                    this.templates.size(), c.size()));
                         }
-                        templates.add(ParseLydiaDFA.parseMONAprint(automaton_print));
                     }
                 }
-                HashSet<String> activitiesRepo = new HashSet<>();
-                templates.forEach(t -> activitiesRepo.addAll(t.getAlphabet()));
+                if (activity_classes && !native_alignment && this.components != null) {
+                    logger.warn("The constraints are decomposed, ignoring --activity-classes.");
+                } else if (activity_classes && !native_alignment) {
+                    // before any STRIPS instantiation trims the templates
+                    this.activityClasses = new ActivityClasses(this.templates);
+                }
+                if (project) {
+                    // before any STRIPS instantiation trims the templates
+                    this.traceProjection = new TraceProjection(this.templates);
+                    if (!this.traceProjection.isEnabled()) {
+                        logger.warn("Some constraint automaton moves on the activities outside its alphabet, no " +
+                                "event can be projected out of the traces.");
+                    }
+                }
 
                 final long t_automata_end = System.currentTimeMillis();
                 final long t_total_automata = t_automata_end - t_automata_start;
@@ -138,118 +342,700 @@ public class App implements Runnable {
                     logger.info(String.format("DFAs built in: %d ms", t_total_automata));
                 }
 
-                boolean computedCombStates = false;
-                List<CombinationOfStates> combStates = new ArrayList<>();
-
                 // for each log trace, compute domain and problem with specified encoding
                 if (!quiet) {
                     logger.info("Computing PDDL domain and problems for each log trace ...");
                 }
                 final long t_compilation_start = System.currentTimeMillis();
-                if (e < 0 || e > 4) {
-                    throw new TypeConversionException("Invalid input: must be in '{0, 1, 2, 3, 4}' but was '" + e + "'");
-                } else {
-                    int trace_nb = 0;
-                    for (XTrace trace : log) {
-                        Trace t = new Trace(XConceptExtension.instance().extractName(trace));
-                        List<String> al_aut = new ArrayList<>();
-                        for (XEvent event : trace) {
-                            String activityName = XConceptExtension.instance().extractName(event).toLowerCase();
-                            activityName = activityName.replaceAll("( |\\/|\\(|\\)|\\<|\\>|\\.)", "").replaceAll("(\\,|\\+|\\-)", "_");
-                            String eventType = XLifecycleExtension.instance().extractTransition(event).toLowerCase();
-                            al_aut.add(String.format("%s_%s", activityName, eventType));
-                        }
-                        activitiesRepo.addAll(al_aut);
-                        t.setTrace_alphabet(al_aut);
-                        TraceAutomaton<String> trace_aut = t.computeTraceAutomaton();
-                        Set<Automaton<String>> tempConstraint = new HashSet<>();
-
-                        if (Encoding.get(e).equals(Encoding.STRIPS_CONJ)) {
-                            for (AutomatonTemplate at : templates) {
-                                tempConstraint.add(at.computeAutomatonNoDeadEnds(new HashSet<>(activitiesRepo)));
-                            }
-                        }
-                        else {
-                            for (AutomatonTemplate at : templates) {
-                                tempConstraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activitiesRepo)));
-                            }
+                if (e < 0 || e > 5) {
+                    throw new TypeConversionException("Invalid input: must be in '{0, 1, 2, 3, 4, 5}' but was '" + e + "'");
+                }
+                if (this.components != null) {
+                    if (!native_alignment) {
+                        this.instantiateComponents();
+                    }
+                } else if (global_alphabet) {
+                    this.collectAlphabet(log);
+                    if (this.traceProjection != null) {
+                        this.activitiesRepo.removeIf(this.traceProjection::isIdle);
+                    }
+                    HashSet<String> activities = this.activitiesRepo;
+                    if (this.activityClasses != null) {
+                        this.classActivities = this.activityClasses.getRepresentatives(new TreeSet<>(activities));
+                        activities = this.classActivities;
+                    }
+                    if (!Encoding.get(e).equals(Encoding.GENERAL_WILDCARD) || native_alignment) {
+                        // the wildcard problems only use their own automata, which do not depend on the log
+                        this.constraintAutomata = this.instantiate(activities);
+                    }
+                    if (Encoding.get(e).equals(Encoding.STRIPS_CONJ)) {
+                        // before any trace is submitted to the compiling threads
+                        this.combStates = this._combStates(this.constraintAutomata);
+                        this.stripsCore = new StripsDomainCore(this.constraintAutomata, this.combStates);
+                    } else if (Encoding.get(e).equals(Encoding.GENERAL_WILDCARD)) {
+                        this.problemFragments = new PddlFragments(this._wildcardAutomata(), activities);
+                    } else {
+                        this.problemFragments = new PddlFragments(this.constraintAutomata, activities);
+                    }
+                    if (!quiet) {
+                        logger.info(String.format("Constraint automata instantiated once over %d activities",
+                                activities.size()));
+                    }
+                }
+                try (AlignmentWriter writer = alignments_file != null && !native_alignment ?
+                        new AlignmentWriter(alignments_file, AlignmentWriter.formatOf(alignments_file)) : null) {
+                    this.alignmentWriter = writer;
+                    if (stream) {
+                        // traces are parsed while the previous ones are being compiled
+                        try (LogStreamReader reader = new LogStreamReader(log_file.toString(), this.normalizer)) {
+                            this.compileLog(() -> reader);
                         }
+                    } else {
+                        this.compileLog(log.stream().map(this::_trace)::iterator);
+                    }
+                    final long t_compilation_end = System.currentTimeMillis();
+                    final long t_total_compilation = t_compilation_end - t_compilation_start;
+                    final long t_wall_clock = t_compilation_end - t_log_start;
+                    if (!quiet) {
+                        logger.info(String.format("Compilation done in: %d ms", t_total_compilation));
+                        logger.info(String.format("Total time DFAs + Compilation: %d ms",
+                                t_compilation_end - t_automata_start));
+                        logger.info(String.format("Total wall-clock time: %d ms", t_wall_clock));
+                    }
+                    if (planner_command != null && !native_alignment) {
+                        this.solveAll();
+                    }
+                }
+            } catch (Exception exception) {
+                logger.error("Something went wrong!");
+                exception.printStackTrace();
+            }
+        }
+    }
 
-                        if (! computedCombStates) {
-                            if (Encoding.get(e).equals(Encoding.STRIPS_CONJ)) {
-                                // Compute combination of states
-                                final long t_combStates_start = System.currentTimeMillis();
-                                List<State> acceptStates = new ArrayList<>();
-                                int k = 0;
-                                for (Automaton<String> a : tempConstraint) {
-                                    if (a.getAcceptStates().size() > 1) {
-                                        k++;
-                                        acceptStates.addAll(a.getAcceptStates());
-                                    }
-                                }
-                                if (acceptStates.size() > 0) {
-                                    combStates = (List<CombinationOfStates>) Combinations.combinations(acceptStates, k, this._singletonFinal(tempConstraint));
-                                }
-                                final long t_combStates_end = System.currentTimeMillis();
-                                if (!quiet) {
-                                    logger.info(String.format("Computation combination of states: %d ms", t_combStates_end - t_combStates_start));
-                                }
-                            }
-                            computedCombStates = true;
-                        }
+    /*
+     * Only the formulas missing from the cache are translated, and their outputs are stored.
+     */
+    private List<AutomatonTemplate> translateCached(LydiaCache cache, List<String> formulas) throws IOException {
+        String[] automata_print = new String[formulas.size()];
+        List<String> toTranslate = new ArrayList<>();
+        for (int i = 0; i < formulas.size(); i++) {
+            automata_print[i] = cache.lookup(formulas.get(i), !ldlf);
+            if (automata_print[i] == null) {
+                toTranslate.add(formulas.get(i));
+            }
+        }
+        Iterator<String> translated = LydiaAutomaton.callLydia(toTranslate, !ldlf, lydia_jobs,
+                lydia_timeout).iterator();
+        List<AutomatonTemplate> parsed = new ArrayList<>();
+        for (int i = 0; i < formulas.size(); i++) {
+            if (automata_print[i] == null) {
+                automata_print[i] = translated.next();
+                cache.store(formulas.get(i), !ldlf, automata_print[i]);
+            }
+            parsed.add(ParseLydiaDFA.parseMONAprint(automata_print[i]));
+        }
+        return parsed;
+    }
 
-                        AbstractEncoding enc;
-                        switch (Encoding.get(e)) {
-                            case GENERAL:
-                                readAndWriteFromfile("domain-general", output_location, e);
-                                enc = new GeneralEncoding("general", activitiesRepo, trace_aut,
-                                        tempConstraint, true);
-                                break;
-                            case GENERAL_CONJ:
-                                readAndWriteFromfile("domain-general-conj", output_location, e);
-                                enc = new GeneralEncodingConjunctiveGoal("general-conj", activitiesRepo,
-                                        trace_aut, tempConstraint, true);
-                                break;
-                            case GENERAL_SHARE:
-                                readAndWriteFromfile("domain-general-share", output_location, e);
-                                enc = new GeneralEncodingShareStates("general-share", activitiesRepo,
-                                        trace_aut, tempConstraint, true);
-                                break;
-                            case GENERAL_CONJ_SHARE:
-                                readAndWriteFromfile("domain-general-conj-share", output_location, e);
-                                enc = new GeneralEncodingConjGoalAndShareStates("general-conj-share",
-                                        activitiesRepo, trace_aut, tempConstraint, true);
-                                break;
-                            case STRIPS_CONJ:
-                                enc = new StripsEncoding("strips-conj", activitiesRepo, trace_aut,
-                                        tempConstraint, combStates, false);
-                                break;
-                            default:
-                                throw new IllegalStateException("Unexpected value: " + Encoding.get(e));
-                        }
-                        List<?> res = enc.generateString(trace_nb);
-                        File problem_f = new File(output_location, String.format("p-%d.pddl", trace_nb));
-                        if (res.size() > 1) {
-                            File domain_f = new File(output_location, String.format("domain-%d.pddl", trace_nb));
-                            FileUtils.writeStringToFile(domain_f, res.get(0).toString(), "utf-8");
-                            FileUtils.writeStringToFile(problem_f, res.get(1).toString(), "utf-8");
-                        } else {
-                            FileUtils.writeStringToFile(problem_f, res.get(0).toString(), "utf-8");
-                        }
-                        trace_nb++;
+    private Trace _trace(XTrace trace) {
+        Trace t = new Trace(XConceptExtension.instance().extractName(trace));
+        List<String> al_aut = new ArrayList<>();
+        for (XEvent event : trace) {
+            al_aut.add(this.normalizer.activity(XConceptExtension.instance().extractName(event),
+                    XLifecycleExtension.instance().extractTransition(event)));
+        }
+        t.setTrace_alphabet(al_aut);
+        return t;
+    }
+
+    private void compileLog(Iterable<Trace> traces) throws Exception {
+        if (variants) {
+            this.traceVariants = new TraceVariants();
+            for (Trace t : traces) {
+                if (this.traceProjection == null) {
+                    this.traceVariants.add(t);
+                    continue;
+                }
+                int v = this.traceVariants.add(this.traceProjection.project(t));
+                if (this._keepEvents()) {
+                    if (v == this.variantEvents.size()) {
+                        this.variantEvents.add(new ArrayList<>());
                     }
+                    this.variantEvents.get(v).add(t.getTrace_alphabet());
                 }
-                final long t_compilation_end = System.currentTimeMillis();
-                final long t_total_compilation = t_compilation_end - t_compilation_start;
-                final long t_wall_clock = t_compilation_end - t_log_start;
+            }
+            if (!quiet) {
+                logger.info(String.format("%d traces grouped into %d variants", this.traceVariants.getNbTraces(),
+                        this.traceVariants.size()));
+            }
+            traces = this.traceVariants.getRepresentatives();
+            this.writeVariants(this.traceVariants, output_location);
+        } else if (this.traceProjection != null) {
+            traces = this._project(traces);
+        }
+        if (native_alignment) {
+            this.alignAll(traces);
+        } else if (prefilter) {
+            // the conforming traces go with the planner alignments, when there are some
+            AlignmentWriter writer = this.alignmentWriter != null ? this.alignmentWriter :
+                    new AlignmentWriter(new File(output_location, "conforming.csv"), AlignmentWriter.Format.CSV);
+            try {
+                this.conformingWriter = writer;
+                this._compileAll(traces);
                 if (!quiet) {
-                    logger.info(String.format("Compilation done in: %d ms", t_total_compilation));
-                    logger.info(String.format("Total time DFAs + Compilation: %d ms", t_compilation_end - t_automata_start));
-                    logger.info(String.format("Total wall-clock time: %d ms", t_wall_clock));
+                    logger.info(String.format("%d traces conform to every constraint, no problem compiled for them",
+                            writer.getNbTraces()));
                 }
-            } catch (Exception exception) {
-                logger.error("Something went wrong!");
-                exception.printStackTrace();
+            } finally {
+                this.conformingWriter = null;
+                if (writer != this.alignmentWriter) {
+                    writer.close();
+                }
+            }
+        } else {
+            this._compileAll(traces);
+        }
+        if (this.traceProjection != null && !quiet) {
+            logger.info(String.format("%d events projected out of the traces", this.traceProjection.getNbDropped()));
+        }
+    }
+
+    /*
+     * Project the traces lazily, in order, keeping their events when their alignments are written.
+     */
+    private Iterable<Trace> _project(Iterable<Trace> traces) {
+        return () -> StreamSupport.stream(traces.spliterator(), false).map(t -> {
+            if (this._keepEvents()) {
+                this.traceEvents.add(t.getTrace_alphabet());
+            }
+            return this.traceProjection.project(t);
+        }).iterator();
+    }
+
+    private boolean _keepEvents() {
+        return alignments_file != null || native_alignment || prefilter;
+    }
+
+    /*
+     * The alignment back on the events of a trace compiled over activity classes or projected, member being the index
+     * of the trace in variant nb, or nb the index of the trace.
+     */
+    private Alignment _onTrace(Alignment a, int nb, int member) {
+        if (this.traceProjection != null) {
+            List<String> events = variants ? this.variantEvents.get(nb).get(member) : this.traceEvents.get(nb);
+            return a.onEvents(events, this.traceProjection::isIdle);
+        }
+        if (this.activityClasses != null) {
+            return a.onEvents(variants ? this.traceVariants.getRepresentative(nb).getTrace_alphabet() :
+                    this.traceEvents.get(nb));
+        }
+        return a;
+    }
+
+    private void _compileAll(Iterable<Trace> traces) throws Exception {
+        if (archive_output) {
+            try (ProblemArchive archive = new ProblemArchive(new File(output_location))) {
+                this.problemArchive = archive;
+                this.compileAll(traces);
+            } finally {
+                this.problemArchive = null;
+            }
+        } else {
+            this.compileAll(traces);
+        }
+    }
+
+    /*
+     * Align the traces in-process, writing each alignment as soon as it is computed. With variants, the alignment of
+     * the representative is written for every trace of the variant.
+     */
+    private void alignAll(Iterable<Trace> traces) throws IOException {
+        File file = alignments_file != null ? alignments_file : new File(output_location, "alignments.csv");
+        try (AlignmentWriter writer = new AlignmentWriter(file, AlignmentWriter.formatOf(file))) {
+            AlignmentEngine shared = this.constraintAutomata == null ? null :
+                    new AlignmentEngine(this.constraintAutomata);
+            List<AlignmentEngine> engines = new ArrayList<>();
+            for (int c = 0; this.components != null && c < this.components.size(); c++) {
+                engines.add(new AlignmentEngine(this.instantiate(this.components.getTemplates(c),
+                        new HashSet<>(this.components.getAlphabet(c)))));
+            }
+            int variant = 0;
+            for (Trace t : traces) {
+                final long t_align_start = System.currentTimeMillis();
+                Alignment a = this.conformanceFilter == null ? null :
+                        this.conformanceFilter.align(t.getTrace_alphabet());
+                if (a == null && this.components != null) {
+                    List<Alignment> parts = new ArrayList<>();
+                    for (int c = 0; c < engines.size(); c++) {
+                        parts.add(engines.get(c).align(this.components.project(t, c).getTrace_alphabet()));
+                    }
+                    if (!parts.contains(null)) {
+                        a = Alignment.merge(null, -1, t.getTrace_alphabet(), parts, this.components::getComponent);
+                    }
+                } else if (a == null) {
+                    AlignmentEngine engine = shared;
+                    if (engine == null) {
+                        this.activitiesRepo.addAll(t.getTrace_alphabet());
+                        engine = new AlignmentEngine(this.instantiate(this.activitiesRepo));
+                    }
+                    a = engine.align(t.getTrace_alphabet());
+                }
+                if (a == null) {
+                    throw new IllegalStateException(String.format("No alignment for trace %s, the constraints " +
+                            "are unsatisfiable", t.getName()));
+                }
+                final long time = System.currentTimeMillis() - t_align_start;
+                if (variants) {
+                    List<String> members = this.traceVariants.getMembers(variant);
+                    for (int i = 0; i < members.size(); i++) {
+                        Alignment m = this._onTrace(a, variant, i);
+                        writer.write(new Alignment(members.get(i), variant, m.getCost(), m.getMoves(), time));
+                    }
+                } else {
+                    Alignment m = this._onTrace(a, variant, 0);
+                    writer.write(new Alignment(t.getName(), -1, m.getCost(), m.getMoves(), time));
+                }
+                variant++;
+            }
+            if (!quiet) {
+                logger.info(String.format("%d traces aligned, total cost %d, log fitness %.4f", writer.getNbTraces(),
+                        writer.getTotalCost(), writer.getLogFitness()));
+            }
+        }
+    }
+
+    /*
+     * Compile the traces in order, numbering problems from 0. With more than one thread, traces are encoded on a
+     * fixed pool while at most a few of them per worker are in flight.
+     */
+    private void compileAll(Iterable<Trace> traces) throws Exception {
+        switch (Encoding.get(e)) {
+            case GENERAL:
+                readAndWriteFromfile("domain-general", output_location, e);
+                break;
+            case GENERAL_CONJ:
+                readAndWriteFromfile("domain-general-conj", output_location, e);
+                break;
+            case GENERAL_SHARE:
+                readAndWriteFromfile("domain-general-share", output_location, e);
+                break;
+            case GENERAL_CONJ_SHARE:
+                readAndWriteFromfile("domain-general-conj-share", output_location, e);
+                break;
+            case GENERAL_WILDCARD:
+                readAndWriteFromfile("domain-general-wildcard", output_location, e);
+                break;
+        }
+        int nbThreads = this.threads;
+        if (nbThreads > 1 && Encoding.get(e).equals(Encoding.STRIPS_CONJ) && this.constraintAutomata == null &&
+                this.componentProblems == null) {
+            // STRIPS automata share their states across instantiations
+            logger.warn("The STRIPS encoding is compiled sequentially without --global-alphabet, ignoring --threads.");
+            nbThreads = 1;
+        }
+        int trace_nb = 0;
+        if (nbThreads <= 1) {
+            for (Trace t : traces) {
+                this._recordName(t);
+                if (this._conforming(t, trace_nb)) {
+                    trace_nb++;
+                    continue;
+                }
+                this.activitiesRepo.addAll(t.getTrace_alphabet());
+                this.compileTrace(t, this.activitiesRepo, trace_nb);
+                trace_nb++;
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(nbThreads);
+        Deque<Future<?>> pending = new ArrayDeque<>();
+        try {
+            for (Trace t : traces) {
+                this._recordName(t);
+                if (this._conforming(t, trace_nb)) {
+                    trace_nb++;
+                    continue;
+                }
+                final HashSet<String> activities;
+                if (this.constraintAutomata == null) {
+                    this.activitiesRepo.addAll(t.getTrace_alphabet());
+                    activities = new HashSet<>(this.activitiesRepo);
+                } else {
+                    activities = this.activitiesRepo;
+                }
+                final int nb = trace_nb;
+                pending.add(pool.submit(() -> {
+                    this.compileTrace(t, activities, nb);
+                    return null;
+                }));
+                if (pending.size() >= 4 * nbThreads) {
+                    pending.poll().get();
+                }
+                trace_nb++;
+            }
+            while (!pending.isEmpty()) {
+                pending.poll().get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * Conforming traces keep their number, so that problem numbers still match the traces (or variants), but no problem
+     * is compiled for them.
+     */
+    private boolean _conforming(Trace t, int trace_nb) throws IOException {
+        if (this.conformingWriter == null) {
+            return false;
+        }
+        Alignment a = this.conformanceFilter.align(t.getTrace_alphabet());
+        if (a == null) {
+            return false;
+        }
+        if (variants) {
+            List<String> members = this.traceVariants.getMembers(trace_nb);
+            for (int i = 0; i < members.size(); i++) {
+                Alignment m = this.traceProjection == null ? a : this._onTrace(a, trace_nb, i);
+                this.conformingWriter.write(new Alignment(members.get(i), trace_nb, 0, m.getMoves(), 0));
+            }
+        } else {
+            Alignment m = this.traceProjection == null ? a : this._onTrace(a, trace_nb, 0);
+            this.conformingWriter.write(new Alignment(t.getName(), -1, 0, m.getMoves(), 0));
+        }
+        return true;
+    }
+
+    /*
+     * Problem names are only needed to map the plans back to the traces.
+     */
+    private void _recordName(Trace t) {
+        if (alignments_file != null && !variants) {
+            this.traceNames.add(t.getName());
+            if ((this.activityClasses != null || this.components != null) && this.traceProjection == null) {
+                this.traceEvents.add(t.getTrace_alphabet());
+            }
+        }
+    }
+
+    /*
+     * Collect the whole log alphabet before compiling, reading the log once more when streaming.
+     */
+    private void collectAlphabet(XLog log) throws IOException {
+        if (stream) {
+            try (LogStreamReader reader = new LogStreamReader(log_file.toString(), this.normalizer)) {
+                reader.forEachRemaining(t -> this.activitiesRepo.addAll(t.getTrace_alphabet()));
+            }
+        } else {
+            for (XTrace trace : log) {
+                this.activitiesRepo.addAll(this._trace(trace).getTrace_alphabet());
+            }
+        }
+    }
+
+    private void computeProduct() {
+        final long t_product_start = System.currentTimeMillis();
+        int nbStates = this.templates.stream().mapToInt(AutomatonTemplate::size).sum();
+        AutomatonTemplate p = AutomatonTemplate.product(this.templates, product_max_states);
+        if (p == null) {
+            logger.warn(String.format("The product of the constraint automata exceeds %d states, keeping them " +
+                    "separate.", product_max_states));
+            return;
+        }
+        this.templates.clear();
+        this.templates.add(p);
+        final long t_product_end = System.currentTimeMillis();
+        if (!quiet) {
+            logger.info(String.format("Product automaton with %d states (%d states in total before) computed in: " +
+                    "%d ms", p.size(), nbStates, t_product_end - t_product_start));
+        }
+    }
+
+    private Set<Automaton<String>> instantiate(HashSet<String> activities) {
+        return this.instantiate(this.templates, activities);
+    }
+
+    private Set<Automaton<String>> instantiate(Collection<AutomatonTemplate> templates, HashSet<String> activities) {
+        Set<Automaton<String>> constraint = new HashSet<>();
+        if (Encoding.get(e).equals(Encoding.STRIPS_CONJ)) {
+            for (AutomatonTemplate at : templates) {
+                constraint.add(at.computeAutomatonNoDeadEnds(new HashSet<>(activities)));
+            }
+        }
+        else {
+            for (AutomatonTemplate at : templates) {
+                constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+            }
+        }
+        return constraint;
+    }
+
+    /*
+     * The automata of the wildcard encoding do not depend on the activities of the log, they are instantiated once.
+     */
+    private synchronized Set<Automaton<String>> _wildcardAutomata() {
+        if (this.wildcardAutomata == null) {
+            this.wildcardAutomata = GeneralEncodingWildcard.instantiate(this.templates);
+        }
+        return this.wildcardAutomata;
+    }
+
+    private List<CombinationOfStates> _combStates(Set<Automaton<String>> constraint) {
+        // Compute combination of states
+        final long t_combStates_start = System.currentTimeMillis();
+        List<CombinationOfStates> comb = new ArrayList<>();
+        List<State> acceptStates = new ArrayList<>();
+        int k = 0;
+        for (Automaton<String> a : constraint) {
+            if (a.getAcceptStates().size() > 1) {
+                k++;
+                acceptStates.addAll(a.getAcceptStates());
+            }
+        }
+        if (acceptStates.size() > 0) {
+            comb = Combinations.combinationsOfStates(acceptStates, k, this._singletonFinal(constraint));
+        }
+        final long t_combStates_end = System.currentTimeMillis();
+        if (!quiet) {
+            logger.info(String.format("Computation combination of states: %d ms", t_combStates_end - t_combStates_start));
+        }
+        return comb;
+    }
+
+    /*
+     * Each component is instantiated once over its own alphabet: with independent components, the activities outside
+     * that alphabet never appear in its problems.
+     */
+    private void instantiateComponents() {
+        this.componentProblems = new ArrayList<>();
+        for (int c = 0; c < this.components.size(); c++) {
+            HashSet<String> activities = new HashSet<>(this.components.getAlphabet(c));
+            ComponentProblem cp = new ComponentProblem(activities,
+                    Encoding.get(e).equals(Encoding.GENERAL_WILDCARD) ?
+                            GeneralEncodingWildcard.instantiate(this.components.getTemplates(c)) :
+                            this.instantiate(this.components.getTemplates(c), activities));
+            if (Encoding.get(e).equals(Encoding.STRIPS_CONJ)) {
+                cp.combStates = this._combStates(cp.automata);
+                cp.stripsCore = new StripsDomainCore(cp.automata, cp.combStates);
+            } else {
+                cp.fragments = new PddlFragments(cp.automata, activities);
+            }
+            this.componentProblems.add(cp);
+        }
+    }
+
+    private void compileTrace(Trace t, HashSet<String> activities, int trace_nb) throws IOException {
+        if (this.componentProblems != null) {
+            this.compileComponents(t, trace_nb);
+            return;
+        }
+        if (this.activityClasses != null) {
+            t = this.activityClasses.map(t);
+            activities = this.classActivities != null ? this.classActivities :
+                    this.activityClasses.getRepresentatives(activities);
+        }
+        TraceAutomaton<String> trace_aut = t.computeTraceAutomaton();
+        Set<Automaton<String>> tempConstraint = this.constraintAutomata;
+        if (Encoding.get(e).equals(Encoding.GENERAL_WILDCARD)) {
+            tempConstraint = this._wildcardAutomata();
+        } else if (tempConstraint == null) {
+            tempConstraint = this.instantiate(activities);
+        }
+        if (this.combStates == null && Encoding.get(e).equals(Encoding.STRIPS_CONJ)) {
+            // without --global-alphabet the STRIPS traces are compiled sequentially, over the first instantiation
+            this.combStates = this._combStates(tempConstraint);
+        }
+        AbstractEncoding enc = this._encoding(activities, trace_aut, tempConstraint, this.combStates,
+                this.stripsCore);
+        if (this.problemFragments != null) {
+            enc.setFragments(this.problemFragments);
+        }
+        this._write(enc, String.valueOf(trace_nb), trace_nb);
+    }
+
+    /*
+     * Problem p-N-cK is the projection of the N-th trace (or variant) onto the alphabet of component K.
+     */
+    private void compileComponents(Trace t, int trace_nb) throws IOException {
+        for (int c = 0; c < this.componentProblems.size(); c++) {
+            ComponentProblem cp = this.componentProblems.get(c);
+            TraceAutomaton<String> trace_aut = this.components.project(t, c).computeTraceAutomaton();
+            AbstractEncoding enc = this._encoding(cp.activities, trace_aut, cp.automata, cp.combStates,
+                    cp.stripsCore);
+            if (cp.fragments != null) {
+                enc.setFragments(cp.fragments);
+            }
+            this._write(enc, String.format("%d-c%d", trace_nb, c), trace_nb);
+        }
+    }
+
+    private AbstractEncoding _encoding(HashSet<String> activities, TraceAutomaton<String> trace_aut,
+                                       Set<Automaton<String>> tempConstraint, List<CombinationOfStates> combStates,
+                                       StripsDomainCore core) {
+        AbstractEncoding enc;
+        switch (Encoding.get(e)) {
+            case GENERAL:
+                enc = new GeneralEncoding("general", activities, trace_aut, tempConstraint, true);
+                break;
+            case GENERAL_CONJ:
+                enc = new GeneralEncodingConjunctiveGoal("general-conj", activities, trace_aut, tempConstraint,
+                        true);
+                break;
+            case GENERAL_SHARE:
+                enc = new GeneralEncodingShareStates("general-share", activities, trace_aut, tempConstraint, true);
+                break;
+            case GENERAL_CONJ_SHARE:
+                enc = new GeneralEncodingConjGoalAndShareStates("general-conj-share", activities, trace_aut,
+                        tempConstraint, true);
+                break;
+            case GENERAL_WILDCARD:
+                enc = new GeneralEncodingWildcard("general-wildcard", activities, trace_aut, tempConstraint, true);
+                break;
+            case STRIPS_CONJ:
+                if (core != null) {
+                    enc = new StripsEncoding("strips-conj", activities, trace_aut, tempConstraint, core, false);
+                } else {
+                    enc = new StripsEncoding("strips-conj", activities, trace_aut, tempConstraint, combStates,
+                            false);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + Encoding.get(e));
+        }
+        return enc;
+    }
+
+    private void _write(AbstractEncoding enc, String id, int trace_nb) throws IOException {
+        File domain_f = new File(output_location, String.format("domain-%s.pddl", id));
+        File problem_f = new File(output_location, String.format("p-%s.pddl", id));
+        if (this.problemArchive == null) {
+            enc.write(this.pddlWriter.get(), domain_f, problem_f, trace_nb);
+            return;
+        }
+        if (!enc.isOnlyProblem()) {
+            try (PddlWriter w = this.pddlWriter.get().open(this.problemArchive.open(domain_f.getName()))) {
+                enc.writeDomain(w);
+            }
+        }
+        try (PddlWriter w = this.pddlWriter.get().open(this.problemArchive.open(problem_f.getName()))) {
+            enc.writeProblem(w, trace_nb);
+        }
+    }
+
+    /*
+     * Run the planner on every compiled problem and collect the plans and their costs.
+     */
+    private void solveAll() throws IOException, InterruptedException {
+        if (!quiet) {
+            logger.info(String.format("Solving the problems with %d planner jobs ...", planner_jobs));
+        }
+        final long t_planning_start = System.currentTimeMillis();
+        PlannerRunner runner = new PlannerRunner(planner_command, planner_jobs, planner_timeout, planner_memory);
+        List<PlannerRunner.Job> jobs = PlannerRunner.findJobs(new File(output_location));
+        File plans = new File(output_location, "plans");
+        File results = new File(output_location, "results.csv");
+        if (this.alignmentWriter == null) {
+            runner.run(jobs, plans, results);
+        } else {
+            AlignmentWriter writer = this.alignmentWriter;
+            runner.run(jobs, plans, results, r -> {
+                try {
+                    this._writeAlignments(writer, r);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (!quiet) {
+                logger.info(String.format("%d traces aligned, total cost %d, log fitness %.4f",
+                        writer.getNbTraces(), writer.getTotalCost(), writer.getLogFitness()));
+            }
+        }
+        final long t_planning_end = System.currentTimeMillis();
+        if (!quiet) {
+            logger.info(String.format("Planning done in: %d ms", t_planning_end - t_planning_start));
+        }
+    }
+
+    /*
+     * Problem p-N is the N-th compiled trace, or the N-th variant, and p-N-cK its component K.
+     */
+    private void _writeAlignments(AlignmentWriter writer, PlannerResult result) throws IOException {
+        if (result.getStatus() != PlannerResult.Status.SOLVED) {
+            logger.warn(String.format("No plan for %s: %s", result.getProblem(), result.getStatus()));
+            if (this.componentProblems == null) {
+                return;
+            }
+        }
+        String[] id = result.getProblem().substring("p-".length()).split("-c");
+        int nb = Integer.parseInt(id[0]);
+        Alignment a;
+        if (this.componentProblems == null) {
+            a = Alignment.fromPlan(null, nb, result.getCost(), result.getPlan(), result.getTime());
+        } else {
+            a = this._mergeComponents(nb, Integer.parseInt(id[1]), result);
+            if (a == null) {
+                return;
+            }
+        }
+        if (variants) {
+            List<String> members = this.traceVariants.getMembers(nb);
+            for (int i = 0; i < members.size(); i++) {
+                Alignment m = this._onTrace(a, nb, i);
+                writer.write(new Alignment(members.get(i), nb, m.getCost(), m.getMoves(), m.getTime()));
+            }
+        } else {
+            Alignment m = this._onTrace(a, nb, 0);
+            writer.write(new Alignment(this.traceNames.get(nb), -1, m.getCost(), m.getMoves(), m.getTime()));
+        }
+    }
+
+    /*
+     * The alignment of trace (or variant) nb merged from the plans of its components once all of them are in, null
+     * until then or if some component has no plan.
+     */
+    private Alignment _mergeComponents(int nb, int component, PlannerResult result) {
+        List<PlannerResult> results = this.componentResults.computeIfAbsent(nb,
+                k -> new ArrayList<>(Collections.nCopies(this.componentProblems.size(), null)));
+        results.set(component, result);
+        if (results.contains(null)) {
+            return null;
+        }
+        this.componentResults.remove(nb);
+        List<Alignment> parts = new ArrayList<>();
+        for (PlannerResult r : results) {
+            if (r.getStatus() != PlannerResult.Status.SOLVED) {
+                return null;
+            }
+            parts.add(Alignment.fromPlan(null, -1, r.getCost(), r.getPlan(), r.getTime()));
+        }
+        List<String> events;
+        if (variants) {
+            events = this.traceVariants.getRepresentative(nb).getTrace_alphabet();
+        } else if (this.traceProjection != null) {
+            // the events of the compiled trace
+            events = this.traceEvents.get(nb).stream().filter(ev -> !this.traceProjection.isIdle(ev))
+                    .collect(Collectors.toList());
+        } else {
+            events = this.traceEvents.get(nb);
+        }
+        return Alignment.merge(null, -1, events, parts, this.components::getComponent);
+    }
+
+    /*
+     * Write the trace-to-variant mapping: one line per variant with its multiplicity and the names of its traces.
+     */
+    private void writeVariants(TraceVariants traceVariants, String output_loc) throws IOException {
+        File variants_f = new File(output_loc, "variants.tsv");
+        try (BufferedWriter writer = Files.newBufferedWriter(variants_f.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("variant\tmultiplicity\ttraces\n");
+            for (int v = 0; v < traceVariants.size(); v++) {
+                writer.write(String.format("%d\t%d", v, traceVariants.getMultiplicity(v)));
+                for (String name : traceVariants.getMembers(v)) {
+                    writer.write("\t");
+                    writer.write(name);
+                }
+                writer.write("\n");
             }
         }
     }
@@ -0,0 +1,93 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.planner;
+
+import java.util.List;
+
+public class PlannerResult {
+    public enum Status {
+        SOLVED,
+        UNSOLVABLE,
+        TIMEOUT,
+        OUT_OF_MEMORY,
+        FAILED
+    }
+
+    private final String problem;
+    private final Status status;
+    private final int exitCode;
+    private final int cost;
+    private final List<String> plan;
+    private final long time;
+
+    public PlannerResult(String problem, Status status, int exitCode, int cost, List<String> plan, long time) {
+        this.problem = problem;
+        this.status = status;
+        this.exitCode = exitCode;
+        this.cost = cost;
+        this.plan = plan;
+        this.time = time;
+    }
+
+    public String getProblem() {
+        return problem;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * @return the cost of the plan, or -1 if no plan was found.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the actions of the plan, without parentheses, or an empty list if no plan was found.
+     */
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return the wall-clock time of the planner run in ms.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public String toCsv() {
+        return String.format("%s,%s,%d,%d,%d,%d", this.problem, this.status.toString().toLowerCase(), this.exitCode,
+                this.cost, this.plan.size(), this.time);
+    }
+
+    @Override
+    public String toString() {
+        return "PlannerResult{" +
+                "problem='" + problem + '\'' +
+                ", status=" + status +
+                ", exitCode=" + exitCode +
+                ", cost=" + cost +
+                ", plan=" + plan +
+                ", time=" + time +
+                '}';
+    }
+}
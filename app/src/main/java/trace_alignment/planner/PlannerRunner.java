@@ -0,0 +1,417 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.planner;
+
+import org.apache.commons.io.FileUtils;
+import trace_alignment.encodings.ProblemArchive;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs an external planner on the compiled problems, a bounded number of them at a time. The planner command is a
+ * template whose {domain}, {problem} and {plan} placeholders are replaced for each problem, e.g.
+ * "fast-downward.py --alias seq-opt-lmcut --plan-file {plan} {domain} {problem}". Arguments are split on whitespace,
+ * except inside single or double quotes and after a backslash, as in a shell. If the command has no {plan}
+ * placeholder, the plan is read from the sas_plan file the planner leaves in its working directory.
+ * <p>
+ * Every run gets its own working directory, so planners writing fixed file names (output.sas, sas_plan) can run
+ * concurrently. Problems compiled into a {@link ProblemArchive} are extracted there right before the run.
+ */
+public class PlannerRunner {
+    public static final String RESULTS_HEADER = "problem,status,exit_code,cost,plan_length,time_ms";
+
+    private static final Pattern PROBLEM_FILE = Pattern.compile("p-(.+)\\.pddl");
+    /* seconds left to timeout(1) to kill the planner before the process is destroyed */
+    private static final long KILL_GRACE = 5;
+    private static final Pattern PLAN_COST = Pattern.compile(";\\s*cost\\s*=\\s*(\\d+)");
+
+    private final List<String> command;
+    private final int slots;
+    private final long timeout;
+    private final long memory;
+
+    /**
+     * @param command the planner command template.
+     * @param slots   the number of planner processes running concurrently.
+     * @param timeout the time limit of each run in seconds, 0 for no limit.
+     * @param memory  the memory limit of each run in MB, 0 for no limit.
+     * @throws IllegalArgumentException if a quote of the command is not closed.
+     */
+    public PlannerRunner(String command, int slots, long timeout, long memory) {
+        this.command = tokenize(command);
+        this.slots = Math.max(1, slots);
+        this.timeout = timeout;
+        this.memory = memory;
+    }
+
+    public static class Job {
+        private final String name;
+        private final File domain;
+        private final File problem;
+        private final ProblemArchive.Reader archive;
+
+        public Job(String name, File domain, File problem) {
+            this(name, domain, problem, null);
+        }
+
+        /**
+         * A job whose domain and problem, if not found as files, are read from the archive by file name.
+         */
+        public Job(String name, File domain, File problem, ProblemArchive.Reader archive) {
+            this.name = name;
+            this.domain = domain;
+            this.problem = problem;
+            this.archive = archive;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public File getDomain() {
+            return domain;
+        }
+
+        public File getProblem() {
+            return problem;
+        }
+
+        /*
+         * The same job, with the archived files extracted to the directory.
+         */
+        private Job _extract(File directory) throws IOException {
+            if (this.archive == null) {
+                return this;
+            }
+            return new Job(this.name, _extract(this.domain, directory), _extract(this.problem, directory));
+        }
+
+        private File _extract(File file, File directory) throws IOException {
+            if (file.isFile() || !this.archive.contains(file.getName())) {
+                return file;
+            }
+            File extracted = new File(directory, file.getName());
+            this.archive.extract(file.getName(), extracted);
+            return extracted;
+        }
+    }
+
+    /**
+     * Pair every problem p-ID.pddl of the directory, or of its problem archive, with its domain-ID.pddl, or with the
+     * shared domain-eN.pddl of the General encodings. Jobs are sorted by problem number.
+     */
+    public static List<Job> findJobs(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException(String.format("Cannot list %s", directory));
+        }
+        ProblemArchive.Reader archive = ProblemArchive.exists(directory) ? new ProblemArchive.Reader(directory) : null;
+        List<String> names = new ArrayList<>();
+        for (File f : files) {
+            names.add(f.getName());
+        }
+        if (archive != null) {
+            names.addAll(archive.getNames());
+        }
+        File sharedDomain = null;
+        List<String> ids = new ArrayList<>();
+        for (String name : names) {
+            Matcher m = PROBLEM_FILE.matcher(name);
+            if (m.matches()) {
+                ids.add(m.group(1));
+            } else if (name.matches("domain-e\\d+\\.pddl")) {
+                sharedDomain = new File(directory, name);
+            }
+        }
+        ids.sort(PlannerRunner::_compareIds);
+        List<Job> jobs = new ArrayList<>();
+        for (String id : ids) {
+            String domainName = String.format("domain-%s.pddl", id);
+            File domain = new File(directory, domainName);
+            if (!domain.isFile() && (archive == null || !archive.contains(domainName))) {
+                domain = sharedDomain;
+            }
+            if (domain == null) {
+                throw new IOException(String.format("No domain for problem p-%s.pddl", id));
+            }
+            jobs.add(new Job(String.format("p-%s", id), domain, new File(directory, String.format("p-%s.pddl", id)),
+                    archive));
+        }
+        return jobs;
+    }
+
+    /*
+     * Numeric ids first, in numeric order, e.g. p-2 before p-10.
+     */
+    private static int _compareIds(String a, String b) {
+        String[] ka = a.split("\\D", 2);
+        String[] kb = b.split("\\D", 2);
+        if (!ka[0].isEmpty() && !kb[0].isEmpty() && !ka[0].equals(kb[0])) {
+            return Long.compare(Long.parseLong(ka[0]), Long.parseLong(kb[0]));
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * Solve all the jobs and write one CSV line per job, in the order of the jobs.
+     */
+    public void run(List<Job> jobs, File planDirectory, File resultsFile) throws IOException, InterruptedException {
+        this.run(jobs, planDirectory, resultsFile, r -> { });
+    }
+
+    /**
+     * Same as {@link #run(List, File, File)}, also handing every result to the consumer once written.
+     */
+    public void run(List<Job> jobs, File planDirectory, File resultsFile, Consumer<PlannerResult> consumer)
+            throws IOException, InterruptedException {
+        try (BufferedWriter writer = Files.newBufferedWriter(resultsFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(RESULTS_HEADER);
+            writer.write("\n");
+            this.run(jobs, planDirectory, r -> {
+                try {
+                    writer.write(r.toCsv());
+                    writer.write("\n");
+                    consumer.accept(r);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Solve all the jobs, handing the results to the consumer in the order of the jobs. At most a few jobs per slot
+     * are pending at any time.
+     */
+    public void run(Iterable<Job> jobs, File planDirectory, Consumer<PlannerResult> consumer)
+            throws IOException, InterruptedException {
+        if (!planDirectory.isDirectory() && !planDirectory.mkdirs()) {
+            throw new IOException(String.format("Cannot create plan directory %s", planDirectory));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(this.slots);
+        Deque<Future<PlannerResult>> pending = new ArrayDeque<>();
+        try {
+            for (Job job : jobs) {
+                pending.add(pool.submit(() -> this.solve(job, planDirectory)));
+                if (pending.size() >= 4 * this.slots) {
+                    consumer.accept(this._get(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                consumer.accept(this._get(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private PlannerResult _get(Future<PlannerResult> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public PlannerResult solve(Job job, File planDirectory) throws IOException, InterruptedException {
+        File plan = new File(planDirectory, String.format("%s.plan", job.getName()));
+        File log = new File(planDirectory, String.format("%s.log", job.getName()));
+        Files.deleteIfExists(plan.toPath());
+        File workDirectory = Files.createTempDirectory(planDirectory.toPath(), "run").toFile();
+        ProcessBuilder proc_builder = new ProcessBuilder(this.commandLine(job._extract(workDirectory), plan));
+        proc_builder.directory(workDirectory);
+        proc_builder.redirectErrorStream(true);
+        proc_builder.redirectOutput(log);
+        final long t_start = System.currentTimeMillis();
+        Process p = proc_builder.start();
+        int exitCode = -1;
+        boolean finished = false;
+        try {
+            if (this.timeout > 0) {
+                // timeout(1) kills the whole process group first, this only guards against a hung wrapper
+                finished = p.waitFor(this.timeout + KILL_GRACE, TimeUnit.SECONDS);
+            } else {
+                p.waitFor();
+                finished = true;
+            }
+            if (finished) {
+                exitCode = p.exitValue();
+            }
+        } finally {
+            if (!finished) {
+                p.destroyForcibly().waitFor();
+            }
+        }
+        final long time = System.currentTimeMillis() - t_start;
+        File sasPlan = new File(workDirectory, "sas_plan");
+        if (!plan.exists() && sasPlan.isFile()) {
+            FileUtils.moveFile(sasPlan, plan);
+        }
+        FileUtils.deleteDirectory(workDirectory);
+
+        PlannerResult.Status status = finished && !this._timedOut(exitCode, time) ? _status(exitCode, plan.isFile()) :
+                PlannerResult.Status.TIMEOUT;
+        if (status != PlannerResult.Status.SOLVED) {
+            return new PlannerResult(job.getName(), status, exitCode, -1, Collections.emptyList(), time);
+        }
+        List<String> lines = FileUtils.readLines(plan, StandardCharsets.UTF_8);
+        Files.deleteIfExists(log.toPath());
+        return new PlannerResult(job.getName(), status, exitCode, planCost(lines), planActions(lines), time);
+    }
+
+    List<String> commandLine(Job job, File plan) {
+        List<String> cmd = new ArrayList<>();
+        if (this.timeout > 0) {
+            // timeout(1) runs the planner in its own process group and kills the whole group, sub-processes included
+            cmd.addAll(Arrays.asList("timeout", "-s", "KILL", String.valueOf(this.timeout)));
+        }
+        if (this.memory > 0) {
+            // the limit is inherited by the planner and all its sub-processes
+            cmd.addAll(Arrays.asList("bash", "-c", String.format("ulimit -v %d && exec \"$@\"", this.memory * 1024),
+                    "planner"));
+        }
+        for (String token : this.command) {
+            cmd.add(token.replace("{domain}", job.getDomain().getAbsolutePath())
+                    .replace("{problem}", job.getProblem().getAbsolutePath())
+                    .replace("{plan}", plan.getAbsolutePath()));
+        }
+        return cmd;
+    }
+
+    /*
+     * Shell-like splitting: single quotes keep everything, double quotes keep everything but backslash escapes.
+     */
+    static List<String> tokenize(String command) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean inToken = false;
+        char quote = 0;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '\\' && i + 1 < command.length() &&
+                    (quote == 0 || command.charAt(i + 1) == '"' || command.charAt(i + 1) == '\\')) {
+                token.append(command.charAt(++i));
+                inToken = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException(String.format("Unterminated quote in planner command: %s", command));
+        }
+        if (inToken) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /*
+     * timeout(1) exits with 124, or dies with its process group on SIGKILL (137), once the limit is reached.
+     */
+    private boolean _timedOut(int exitCode, long time) {
+        return this.timeout > 0 && (exitCode == 124 || exitCode == 137) && time >= this.timeout * 1000;
+    }
+
+    /*
+     * Exit codes follow the Fast Downward conventions: 0-3 plan found (possibly out of resources afterwards), 10-11
+     * proven unsolvable, 12 search gave up (incomplete, not a proof), 20/22/24 out of memory and 21/23 out of time.
+     */
+    private static PlannerResult.Status _status(int exitCode, boolean planFound) {
+        if (exitCode >= 0 && exitCode <= 3 && planFound) {
+            return PlannerResult.Status.SOLVED;
+        }
+        switch (exitCode) {
+            case 10:
+            case 11:
+                return PlannerResult.Status.UNSOLVABLE;
+            case 20:
+            case 22:
+            case 24:
+                return PlannerResult.Status.OUT_OF_MEMORY;
+            case 21:
+            case 23:
+                return PlannerResult.Status.TIMEOUT;
+        }
+        return PlannerResult.Status.FAILED;
+    }
+
+    /**
+     * @return the actions of a plan file, one per line, without the enclosing parentheses.
+     */
+    public static List<String> planActions(List<String> lines) {
+        List<String> actions = new ArrayList<>();
+        for (String line : lines) {
+            String l = line.trim();
+            if (l.startsWith("(") && l.endsWith(")")) {
+                actions.add(l.substring(1, l.length() - 1).trim());
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * @return the cost reported in the "; cost = N" comment of a plan file. Without it, the cost is the number of add
+     * and del actions, as in the encodings.
+     */
+    public static int planCost(List<String> lines) {
+        for (String line : lines) {
+            Matcher m = PLAN_COST.matcher(line);
+            if (m.find()) {
+                return Integer.parseInt(m.group(1));
+            }
+        }
+        int cost = 0;
+        for (String action : planActions(lines)) {
+            if (action.startsWith("add") || action.startsWith("del")) {
+                cost++;
+            }
+        }
+        return cost;
+    }
+}
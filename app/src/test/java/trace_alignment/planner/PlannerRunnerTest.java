@@ -0,0 +1,183 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.planner;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import trace_alignment.encodings.ProblemArchive;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlannerRunnerTest {
+    private File directory;
+    private File planner;
+
+    /*
+     *  Stub planner: the content of the problem file tells it how to behave.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("planner").toFile();
+        this.directory.deleteOnExit();
+        this.planner = new File(this.directory, "planner.sh");
+        FileUtils.writeStringToFile(this.planner, "#!/bin/bash\n" +
+                "case $(cat \"$2\") in\n" +
+                "  sleep) sleep 30 ;;\n" +
+                "  unsolvable) exit 11 ;;\n" +
+                "  gaveup) exit 12 ;;\n" +
+                "  *) out=${3:-sas_plan}\n" +
+                "     printf '(sync t0 a t1)\\n(add b)\\n(del t1 c t2)\\n; cost = 2 (general cost)\\n' > \"$out\" ;;\n" +
+                "esac\n", StandardCharsets.UTF_8);
+        assertTrue(this.planner.setExecutable(true));
+        FileUtils.writeStringToFile(new File(this.directory, "domain-e0.pddl"), "domain", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(this.directory, "p-0.pddl"), "solve", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(this.directory, "p-1.pddl"), "unsolvable", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(this.directory, "p-2.pddl"), "sleep", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(this.directory, "p-10.pddl"), "solve", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testFindJobs() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (PlannerRunner.Job job : PlannerRunner.findJobs(this.directory)) {
+            names.add(job.getName());
+            assertEquals("domain-e0.pddl", job.getDomain().getName());
+        }
+        assertEquals(Arrays.asList("p-0", "p-1", "p-2", "p-10"), names);
+    }
+
+    @Test
+    void testRun() throws Exception {
+        PlannerRunner runner = new PlannerRunner(this.planner.getPath() + " {domain} {problem} {plan}", 4, 1, 0);
+        List<PlannerResult> results = new ArrayList<>();
+        final long t_start = System.currentTimeMillis();
+        runner.run(PlannerRunner.findJobs(this.directory), new File(this.directory, "plans"), results::add);
+        assertTrue(System.currentTimeMillis() - t_start < 10000);
+
+        assertEquals(4, results.size());
+        assertEquals(PlannerResult.Status.SOLVED, results.get(0).getStatus());
+        assertEquals(2, results.get(0).getCost());
+        assertEquals(Arrays.asList("sync t0 a t1", "add b", "del t1 c t2"), results.get(0).getPlan());
+        assertEquals(PlannerResult.Status.UNSOLVABLE, results.get(1).getStatus());
+        assertEquals(11, results.get(1).getExitCode());
+        assertEquals(PlannerResult.Status.TIMEOUT, results.get(2).getStatus());
+        assertEquals("p-10", results.get(3).getProblem());
+        assertTrue(new File(this.directory, "plans/p-10.plan").isFile());
+    }
+
+    /*
+     * Running, unless it is gone or a zombie.
+     */
+    private boolean _alive(String pid) throws Exception {
+        File stat = new File(String.format("/proc/%s/stat", pid));
+        if (!stat.exists()) {
+            return false;
+        }
+        String content = FileUtils.readFileToString(stat, StandardCharsets.UTF_8);
+        return !content.substring(content.lastIndexOf(')') + 1).trim().startsWith("Z");
+    }
+
+    @Test
+    void testTimeoutKillsSubprocesses() throws Exception {
+        File pid = new File(this.directory, "child.pid");
+        File spawner = new File(this.directory, "spawner.sh");
+        FileUtils.writeStringToFile(spawner, "#!/bin/bash\n" +
+                "sleep 30 &\n" +
+                "echo $! > \"" + pid.getAbsolutePath() + "\"\n" +
+                "wait\n", StandardCharsets.UTF_8);
+        assertTrue(spawner.setExecutable(true));
+        PlannerRunner runner = new PlannerRunner(spawner.getPath() + " {domain} {problem}", 1, 1, 0);
+        File plans = new File(this.directory, "plans");
+        assertTrue(plans.mkdirs());
+        PlannerResult result = runner.solve(PlannerRunner.findJobs(this.directory).get(0), plans);
+        assertEquals(PlannerResult.Status.TIMEOUT, result.getStatus());
+        String child = FileUtils.readFileToString(pid, StandardCharsets.UTF_8).trim();
+        for (int i = 0; i < 50 && this._alive(child); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(this._alive(child));
+    }
+
+    @Test
+    void testSasPlanAndMemoryLimit() throws Exception {
+        PlannerRunner runner = new PlannerRunner(this.planner.getPath() + " {domain} {problem}", 1, 0, 1024);
+        PlannerRunner.Job job = PlannerRunner.findJobs(this.directory).get(0);
+        assertEquals("bash", runner.commandLine(job, new File("plan")).get(0));
+        File results = new File(this.directory, "results.csv");
+        runner.run(Arrays.asList(job), new File(this.directory, "plans"), results);
+        assertEquals(Arrays.asList(PlannerRunner.RESULTS_HEADER, "p-0,solved,0,2,3,"),
+                Arrays.asList(FileUtils.readLines(results, StandardCharsets.UTF_8).get(0),
+                        FileUtils.readLines(results, StandardCharsets.UTF_8).get(1).replaceAll("\\d+$", "")));
+    }
+
+    @Test
+    void testArchive() throws Exception {
+        File archived = Files.createTempDirectory("archive").toFile();
+        archived.deleteOnExit();
+        try (ProblemArchive archive = new ProblemArchive(archived)) {
+            archive.add("domain-0.pddl", "domain".getBytes(StandardCharsets.UTF_8));
+            archive.add("p-0.pddl", "solve".getBytes(StandardCharsets.UTF_8));
+            archive.add("domain-1.pddl", "domain".getBytes(StandardCharsets.UTF_8));
+            archive.add("p-1.pddl", "unsolvable".getBytes(StandardCharsets.UTF_8));
+        }
+        List<PlannerRunner.Job> jobs = PlannerRunner.findJobs(archived);
+        assertEquals(2, jobs.size());
+        assertEquals("domain-1.pddl", jobs.get(1).getDomain().getName());
+        assertFalse(jobs.get(1).getProblem().exists());
+
+        PlannerRunner runner = new PlannerRunner(this.planner.getPath() + " {domain} {problem} {plan}", 2, 0, 0);
+        List<PlannerResult> results = new ArrayList<>();
+        runner.run(jobs, new File(archived, "plans"), results::add);
+        assertEquals(PlannerResult.Status.SOLVED, results.get(0).getStatus());
+        assertEquals(PlannerResult.Status.UNSOLVABLE, results.get(1).getStatus());
+    }
+
+    @Test
+    void testIncompleteSearch() throws Exception {
+        File gaveUp = Files.createTempDirectory("gaveup").toFile();
+        gaveUp.deleteOnExit();
+        FileUtils.writeStringToFile(new File(gaveUp, "domain-e0.pddl"), "domain", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(gaveUp, "p-0.pddl"), "gaveup", StandardCharsets.UTF_8);
+        PlannerRunner runner = new PlannerRunner(this.planner.getPath() + " {domain} {problem}", 1, 0, 0);
+        File plans = new File(gaveUp, "plans");
+        assertTrue(plans.mkdirs());
+        PlannerResult result = runner.solve(PlannerRunner.findJobs(gaveUp).get(0), plans);
+        // exit code 12: the search gave up, which does not prove the problem unsolvable
+        assertEquals(PlannerResult.Status.FAILED, result.getStatus());
+        assertEquals(12, result.getExitCode());
+    }
+
+    @Test
+    void testTokenize() {
+        assertEquals(Arrays.asList("fd", "--search", "astar(lmcut())", "{domain}"),
+                PlannerRunner.tokenize("  fd --search 'astar(lmcut())'\t{domain} "));
+        assertEquals(Arrays.asList("planner", "a b", "it's", "\"q\"", "x y", ""),
+                PlannerRunner.tokenize("planner \"a b\" it\\'s \"\\\"q\\\"\" x\\ y ''"));
+        assertThrows(IllegalArgumentException.class, () -> PlannerRunner.tokenize("planner 'unterminated"));
+    }
+
+    @Test
+    void testPlanCost() {
+        assertEquals(2, PlannerRunner.planCost(Arrays.asList("(sync t0 a t1)", "(add b)", "(del t1 c t2)")));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * The alignment of a log trace: the sequence of sync, add and del moves and its cost.
+ */
+public class Alignment {
+    private final String traceName;
+    private final int variant;
+    private final int cost;
+    private final List<Move> moves;
+    private final long time;
+
+    public Alignment(int cost, List<Move> moves) {
+        this(null, -1, cost, moves, 0);
+    }
+
+    /**
+     * @param traceName the name of the aligned trace.
+     * @param variant   the id of the variant of the trace, -1 if traces are not grouped into variants.
+     * @param time      the time spent to compute the alignment in ms.
+     */
+    public Alignment(String traceName, int variant, int cost, List<Move> moves, long time) {
+        this.traceName = traceName;
+        this.variant = variant;
+        this.cost = cost;
+        this.moves = moves;
+        this.time = time;
+    }
+
+    /**
+     * Rebuild the alignment from the actions of a plan of any of the encodings: sync/add/del with the activity as
+     * parameter in the General encodings, sync-ACT-tItJ, add-ACT-cN and del-ACT-tItJ in the STRIPS one. The other
+     * actions (goto-goal) are not moves.
+     */
+    public static Alignment fromPlan(String traceName, int variant, int cost, List<String> actions, long time) {
+        List<Move> moves = new ArrayList<>();
+        for (String action : actions) {
+            String[] tokens = action.trim().toLowerCase().split("\\s+");
+            String name = tokens[0];
+            if (name.equals("sync") || name.equals("del")) {
+                moves.add(new Move(name.equals("sync") ? Move.Type.SYNC : Move.Type.DEL, tokens[2]));
+            } else if (name.equals("add")) {
+                moves.add(new Move(Move.Type.ADD, tokens[1]));
+            } else if (name.matches("(sync|add|del)-.+-.+")) {
+                // activities never contain '-', see ParseLog.normalizeActivity
+                String[] parts = name.split("-");
+                moves.add(new Move(Move.Type.valueOf(parts[0].toUpperCase()), parts[1]));
+            }
+        }
+        return new Alignment(traceName, variant, cost, moves, time);
+    }
+
+    /**
+     * @return the same alignment with its sync and del moves, which follow the trace in order, on the given events,
+     * e.g. the activities of a trace compiled over its activity classes. Add moves are left unchanged.
+     */
+    public Alignment onEvents(List<String> events) {
+        return this.onEvents(events, e -> false);
+    }
+
+    /**
+     * @return the same alignment on the given events, where the dropped events, which were projected out of the
+     * aligned trace, come back as sync moves.
+     */
+    public Alignment onEvents(List<String> events, Predicate<String> dropped) {
+        List<Move> moves = new ArrayList<>(events.size() + this.moves.size());
+        int i = 0;
+        for (Move m : this.moves) {
+            if (m.getType() == Move.Type.ADD) {
+                moves.add(m);
+            } else {
+                while (dropped.test(events.get(i))) {
+                    moves.add(new Move(Move.Type.SYNC, events.get(i++)));
+                }
+                moves.add(new Move(m.getType(), events.get(i++)));
+            }
+        }
+        while (i < events.size()) {
+            moves.add(new Move(Move.Type.SYNC, events.get(i++)));
+        }
+        return new Alignment(this.traceName, this.variant, this.cost, moves, this.time);
+    }
+
+    /**
+     * @return the alignment of the events merged from the alignments of its parts, part i aligning in order the events
+     * e such that part(e) == i. The events of no part (part(e) < 0) are sync moves. The cost and time are the sums of
+     * those of the parts.
+     */
+    public static Alignment merge(String traceName, int variant, List<String> events, List<Alignment> parts,
+                                  ToIntFunction<String> part) {
+        List<Move> moves = new ArrayList<>();
+        int[] next = new int[parts.size()];
+        for (String e : events) {
+            int p = part.applyAsInt(e);
+            if (p < 0) {
+                moves.add(new Move(Move.Type.SYNC, e));
+                continue;
+            }
+            List<Move> partMoves = parts.get(p).getMoves();
+            while (partMoves.get(next[p]).getType() == Move.Type.ADD) {
+                moves.add(partMoves.get(next[p]++));
+            }
+            moves.add(new Move(partMoves.get(next[p]++).getType(), e));
+        }
+        int cost = 0;
+        long time = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            List<Move> partMoves = parts.get(p).getMoves();
+            while (next[p] < partMoves.size()) {
+                moves.add(partMoves.get(next[p]++));
+            }
+            cost += parts.get(p).getCost();
+            time += parts.get(p).getTime();
+        }
+        return new Alignment(traceName, variant, cost, moves, time);
+    }
+
+    public String getTraceName() {
+        return traceName;
+    }
+
+    public int getVariant() {
+        return variant;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getNbMoves(Move.Type type) {
+        int nb = 0;
+        for (Move m : this.moves) {
+            if (m.getType() == type) {
+                nb++;
+            }
+        }
+        return nb;
+    }
+
+    /**
+     * @return 1 - cost / number of moves, i.e. 1 for a perfectly fitting trace and 0 when no move is synchronous.
+     */
+    public double getFitness() {
+        return this.moves.isEmpty() ? 1.0 : 1.0 - (double) this.cost / this.moves.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Alignment)) return false;
+        Alignment alignment = (Alignment) o;
+        return variant == alignment.variant && cost == alignment.cost && Objects.equals(traceName, alignment.traceName)
+                && Objects.equals(moves, alignment.moves);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(traceName, variant, cost, moves);
+    }
+
+    @Override
+    public String toString() {
+        return "Alignment{" +
+                "traceName='" + traceName + '\'' +
+                ", variant=" + variant +
+                ", cost=" + cost +
+                ", moves=" + moves +
+                ", time=" + time +
+                '}';
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.CompiledAutomaton;
+import trace_alignment.automaton.State;
+import trace_alignment.automaton.TraceAutomaton;
+import trace_alignment.automaton.Transition;
+
+import java.util.*;
+
+/**
+ * Optimal alignment of traces against a set of constraint automata, computed in-process with A* over the synchronous
+ * product of the trace and the automata. The moves and their costs are the ones of the PDDL encodings: a sync move
+ * (cost 0) consumes a trace event and moves every automaton, an add move (cost 1) only moves the automata and a del
+ * move (cost 1) only consumes a trace event. As in the encodings, a missing transition leaves the automaton in its
+ * state.
+ * <p>
+ * The heuristic is the maximum, over the automata, of the optimal cost of aligning the remaining suffix of the trace
+ * against that automaton alone. Each of them is a lower bound of the cost in the product, hence the heuristic is
+ * admissible (and consistent) and the first goal extracted is optimal.
+ */
+public class AlignmentEngine {
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    private final List<CompiledAutomaton<String>> automata = new ArrayList<>();
+    private final List<String> activities = new ArrayList<>();
+    private final Map<String, Integer> activityIds = new HashMap<>();
+    /* symbols[j][a] is the symbol id of activity a in automaton j, -1 if a is not in its alphabet */
+    private final int[][] symbols;
+
+    /**
+     * @param constraintAutomata the automata instantiated over (at least) the activities of the traces to align.
+     */
+    public AlignmentEngine(Set<Automaton<String>> constraintAutomata) {
+        Set<String> acts = new TreeSet<>();
+        for (Automaton<String> a : constraintAutomata) {
+            CompiledAutomaton<String> dfa = new CompiledAutomaton<>(a);
+            this.automata.add(dfa);
+            for (int x = 0; x < dfa.getNbSymbols(); x++) {
+                acts.add(dfa.getSymbol(x));
+            }
+        }
+        for (String a : acts) {
+            this.activityIds.put(a, this.activities.size());
+            this.activities.add(a);
+        }
+        this.symbols = new int[this.automata.size()][this.activities.size()];
+        for (int j = 0; j < this.automata.size(); j++) {
+            for (int a = 0; a < this.activities.size(); a++) {
+                this.symbols[j][a] = this.automata.get(j).getSymbolId(this.activities.get(a));
+            }
+        }
+    }
+
+    public Alignment align(TraceAutomaton<String> traceAutomaton) {
+        Map<State, Transition<String>> next = new HashMap<>();
+        for (Transition<String> t : traceAutomaton.getTransitionFunction()) {
+            next.put(t.getInputState(), t);
+        }
+        List<String> trace = new ArrayList<>();
+        Transition<String> t = next.get(traceAutomaton.getInitState());
+        while (t != null) {
+            trace.add(t.getSymbol());
+            t = next.get(t.getOutputState());
+        }
+        return this.align(trace);
+    }
+
+    /**
+     * @param trace the activities of the trace, in order.
+     * @return an optimal alignment, or null if no sequence of activities satisfies all the constraints.
+     */
+    public Alignment align(List<String> trace) {
+        int n = trace.size();
+        int k = this.automata.size();
+        // activities unknown to every automaton never move them
+        int[] events = new int[n];
+        for (int i = 0; i < n; i++) {
+            events[i] = this.activityIds.getOrDefault(trace.get(i), -1);
+        }
+        int[][][] h = new int[k][][];
+        int[] init = new int[k];
+        for (int j = 0; j < k; j++) {
+            h[j] = this._suffixCosts(j, events);
+            init[j] = this.automata.get(j).getInit();
+        }
+
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        Map<Key, Integer> bestCost = new HashMap<>();
+        Node root = new Node(0, init, 0, null, null);
+        root.f = this._heuristic(h, root);
+        if (root.f >= INF) {
+            return null;
+        }
+        open.add(root);
+        bestCost.put(new Key(root), 0);
+        while (!open.isEmpty()) {
+            Node node = open.poll();
+            if (node.g > bestCost.get(new Key(node))) {
+                continue;
+            }
+            if (node.pos == n && this._accepting(node.states)) {
+                return this._alignment(node);
+            }
+            if (node.pos < n) {
+                String e = trace.get(node.pos);
+                this._push(open, bestCost, h, new Node(node.pos + 1, this._step(node.states, events[node.pos]),
+                        node.g, node, new Move(Move.Type.SYNC, e)));
+                this._push(open, bestCost, h, new Node(node.pos + 1, node.states, node.g + 1, node,
+                        new Move(Move.Type.DEL, e)));
+            }
+            for (int a = 0; a < this.activities.size(); a++) {
+                int[] states = this._step(node.states, a);
+                // only activities moving at least one automaton are worth adding
+                if (!Arrays.equals(states, node.states)) {
+                    this._push(open, bestCost, h, new Node(node.pos, states, node.g + 1, node,
+                            new Move(Move.Type.ADD, this.activities.get(a))));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void _push(PriorityQueue<Node> open, Map<Key, Integer> bestCost, int[][][] h, Node node) {
+        Key key = new Key(node);
+        Integer best = bestCost.get(key);
+        if (best != null && best <= node.g) {
+            return;
+        }
+        node.f = node.g + this._heuristic(h, node);
+        if (node.f >= INF) {
+            return;
+        }
+        bestCost.put(key, node.g);
+        open.add(node);
+    }
+
+    private int _heuristic(int[][][] h, Node node) {
+        int max = 0;
+        for (int j = 0; j < h.length; j++) {
+            max = Math.max(max, h[j][node.pos][node.states[j]]);
+        }
+        return max;
+    }
+
+    private int[] _step(int[] states, int activity) {
+        int[] next = new int[states.length];
+        for (int j = 0; j < states.length; j++) {
+            next[j] = activity < 0 ? states[j] : this.automata.get(j).step(states[j], this.symbols[j][activity]);
+        }
+        return next;
+    }
+
+    private boolean _accepting(int[] states) {
+        for (int j = 0; j < states.length; j++) {
+            if (!this.automata.get(j).isAccepting(states[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Alignment _alignment(Node goal) {
+        LinkedList<Move> moves = new LinkedList<>();
+        for (Node node = goal; node.parent != null; node = node.parent) {
+            moves.addFirst(node.move);
+        }
+        return new Alignment(goal.g, new ArrayList<>(moves));
+    }
+
+    /*
+     * costs[i][q] is the optimal cost of aligning events[i..] against automaton j alone, starting from q.
+     * Add moves do not consume events, so each row is closed under them with a Bellman-Ford relaxation.
+     */
+    private int[][] _suffixCosts(int j, int[] events) {
+        CompiledAutomaton<String> dfa = this.automata.get(j);
+        int n = events.length;
+        int[][] costs = new int[n + 1][dfa.getNbStates()];
+        for (int q = 0; q < dfa.getNbStates(); q++) {
+            costs[n][q] = dfa.isAccepting(q) ? 0 : INF;
+        }
+        _closeUnderAdds(dfa, costs[n]);
+        for (int i = n - 1; i >= 0; i--) {
+            int symbol = events[i] < 0 ? -1 : this.symbols[j][events[i]];
+            for (int q = 0; q < dfa.getNbStates(); q++) {
+                costs[i][q] = Math.min(costs[i + 1][dfa.step(q, symbol)], costs[i + 1][q] + 1);
+            }
+            _closeUnderAdds(dfa, costs[i]);
+        }
+        return costs;
+    }
+
+    private static void _closeUnderAdds(CompiledAutomaton<String> dfa, int[] row) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int x = 0; x < dfa.getNbSymbols(); x++) {
+                for (int q = 0; q < row.length; q++) {
+                    int succ = dfa.step(q, x);
+                    if (row[succ] + 1 < row[q]) {
+                        row[q] = row[succ] + 1;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Node implements Comparable<Node> {
+        private final int pos;
+        private final int[] states;
+        private final int g;
+        private int f;
+        private final Node parent;
+        private final Move move;
+
+        private Node(int pos, int[] states, int g, Node parent, Move move) {
+            this.pos = pos;
+            this.states = states;
+            this.g = g;
+            this.parent = parent;
+            this.move = move;
+        }
+
+        /*
+         * Ties on f are broken in favour of the nodes closest to the goal.
+         */
+        @Override
+        public int compareTo(Node o) {
+            if (this.f != o.f) {
+                return Integer.compare(this.f, o.f);
+            }
+            if (this.g != o.g) {
+                return Integer.compare(o.g, this.g);
+            }
+            return Integer.compare(o.pos, this.pos);
+        }
+    }
+
+    private static class Key {
+        private final int pos;
+        private final int[] states;
+
+        private Key(Node node) {
+            this.pos = node.pos;
+            this.states = node.states;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return pos == key.pos && Arrays.equals(states, key.states);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pos + Arrays.hashCode(states);
+        }
+    }
+}
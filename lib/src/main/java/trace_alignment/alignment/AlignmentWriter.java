@@ -0,0 +1,132 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes alignments one per line, as CSV or as JSON lines, while keeping only the running totals needed for the log
+ * fitness. Nothing else is held in memory, so arbitrarily large logs can be written.
+ */
+public class AlignmentWriter implements Closeable {
+    public enum Format {
+        CSV,
+        JSONL
+    }
+
+    public static final String CSV_HEADER = "trace,variant,cost,sync,add,del,fitness,time_ms";
+
+    private final Writer writer;
+    private final Format format;
+    private long nbTraces = 0;
+    private double fitnessSum = 0;
+    private long costSum = 0;
+
+    public AlignmentWriter(File file, Format format) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        this.format = format;
+        if (this.format == Format.CSV) {
+            this.writer.write(CSV_HEADER);
+            this.writer.write("\n");
+        }
+    }
+
+    /**
+     * @return JSONL for files ending with .jsonl or .json, CSV otherwise.
+     */
+    public static Format formatOf(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSONL : Format.CSV;
+    }
+
+    public synchronized void write(Alignment alignment) throws IOException {
+        if (this.format == Format.CSV) {
+            this.writer.write(String.format("%s,%d,%d,%d,%d,%d,%s,%d\n", _csv(alignment.getTraceName()),
+                    alignment.getVariant(), alignment.getCost(), alignment.getNbMoves(Move.Type.SYNC),
+                    alignment.getNbMoves(Move.Type.ADD), alignment.getNbMoves(Move.Type.DEL),
+                    _fitness(alignment.getFitness()), alignment.getTime()));
+        } else {
+            StringBuilder moves = new StringBuilder();
+            for (Move m : alignment.getMoves()) {
+                if (moves.length() > 0) {
+                    moves.append(",");
+                }
+                moves.append(_json(m.toString()));
+            }
+            this.writer.write(String.format("{\"trace\":%s,\"variant\":%d,\"cost\":%d,\"sync\":%d,\"add\":%d," +
+                            "\"del\":%d,\"fitness\":%s,\"time_ms\":%d,\"moves\":[%s]}\n",
+                    _json(alignment.getTraceName()), alignment.getVariant(), alignment.getCost(),
+                    alignment.getNbMoves(Move.Type.SYNC), alignment.getNbMoves(Move.Type.ADD),
+                    alignment.getNbMoves(Move.Type.DEL), _fitness(alignment.getFitness()), alignment.getTime(),
+                    moves));
+        }
+        this.nbTraces++;
+        this.fitnessSum += alignment.getFitness();
+        this.costSum += alignment.getCost();
+    }
+
+    public synchronized long getNbTraces() {
+        return nbTraces;
+    }
+
+    public synchronized long getTotalCost() {
+        return costSum;
+    }
+
+    /**
+     * @return the average fitness of the traces written so far, 1 if none was written.
+     */
+    public synchronized double getLogFitness() {
+        return this.nbTraces == 0 ? 1.0 : this.fitnessSum / this.nbTraces;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+    private static String _fitness(double fitness) {
+        return String.format(Locale.ROOT, "%.6f", fitness);
+    }
+
+    private static String _csv(String s) {
+        if (s == null) {
+            return "";
+        }
+        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+
+    private static String _json(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder b = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import trace_alignment.automaton.AutomatonTemplate;
+import trace_alignment.automaton.CompiledAutomaton;
+
+import java.util.*;
+
+/**
+ * Replays traces through the constraint automata to single out the traces that already satisfy every constraint:
+ * their optimal alignment is made of sync moves only and costs 0, so there is nothing to plan for them.
+ * <p>
+ * Each template is instantiated once, over its own alphabet plus a symbol standing for every other activity, hence the
+ * filter does not depend on the log alphabet and a replay is linear in the length of the trace. Templates must not have
+ * been trimmed by a STRIPS instantiation yet.
+ */
+public class ConformanceFilter {
+    /* never an activity, '<' and '>' are stripped by ParseLog.normalizeActivity */
+    static final String OTHER = "<other>";
+
+    private final List<CompiledAutomaton<String>> automata = new ArrayList<>();
+    private final List<Integer> others = new ArrayList<>();
+
+    public ConformanceFilter(Collection<AutomatonTemplate> templates) {
+        for (AutomatonTemplate at : templates) {
+            HashSet<String> activities = new HashSet<>(at.getAlphabet());
+            activities.add(OTHER);
+            CompiledAutomaton<String> dfa = at.computeAutomatonWithDeadEnds(activities).compile();
+            this.automata.add(dfa);
+            this.others.add(dfa.getSymbolId(OTHER));
+        }
+    }
+
+    public boolean conforms(List<String> trace) {
+        for (int j = 0; j < this.automata.size(); j++) {
+            CompiledAutomaton<String> dfa = this.automata.get(j);
+            int other = this.others.get(j);
+            int state = dfa.getInit();
+            for (String e : trace) {
+                int symbol = dfa.getSymbolId(e);
+                state = dfa.step(state, symbol < 0 ? other : symbol);
+            }
+            if (!dfa.isAccepting(state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the alignment made of sync moves only if the trace satisfies every constraint, null otherwise.
+     */
+    public Alignment align(List<String> trace) {
+        if (!this.conforms(trace)) {
+            return null;
+        }
+        List<Move> moves = new ArrayList<>(trace.size());
+        for (String e : trace) {
+            moves.add(new Move(Move.Type.SYNC, e));
+        }
+        return new Alignment(0, moves);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import java.util.Objects;
+
+/**
+ * A single step of an alignment: a synchronous move on a trace event, the addition of an activity missing from the
+ * trace, or the deletion of a trace event.
+ */
+public class Move {
+    public enum Type {
+        SYNC,
+        ADD,
+        DEL
+    }
+
+    private final Type type;
+    private final String activity;
+
+    public Move(Type type, String activity) {
+        this.type = type;
+        this.activity = activity;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getActivity() {
+        return activity;
+    }
+
+    /**
+     * @return 0 for synchronous moves, 1 otherwise.
+     */
+    public int getCost() {
+        return this.type == Type.SYNC ? 0 : 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Move)) return false;
+        Move move = (Move) o;
+        return type == move.type && Objects.equals(activity, move.activity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, activity);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s-%s", this.type.toString().toLowerCase(), this.activity);
+    }
+}
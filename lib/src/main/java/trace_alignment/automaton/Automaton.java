@@ -15,10 +15,11 @@
 package trace_alignment.automaton;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class Automaton<T> {
-    private static int nextId = 0;
+    private static final AtomicInteger nextId = new AtomicInteger();
 
     private String id;
     private final Set<T> alphabet;
@@ -33,8 +34,7 @@ public class Automaton<T> {
         this.dead_ends = dead_ends;
         if (! this.validate())
             throw new IllegalArgumentException();
-        this.id = String.format("%d", Automaton.nextId);
-        Automaton.nextId++;
+        this.id = String.format("%d", Automaton.nextId.getAndIncrement());
     }
 
     private boolean _validate_transition_symbol() {
@@ -72,7 +72,7 @@ public class Automaton<T> {
     }
 
     public Set<Transition<T>> getAllTransitions() {
-        Set<Transition<T>> allTransitions = this.getTransitionFunction();
+        Set<Transition<T>> allTransitions = new HashSet<>(this.getTransitionFunction());
         allTransitions.addAll(this.getDead_ends());
         return allTransitions;
     }
@@ -96,22 +96,22 @@ public class Automaton<T> {
         return state;
     }
 
+    /*
+     * Iterative, so that long traces do not overflow the stack.
+     */
     public boolean run(State state, Queue<T> symbol)
             throws IllegalStateException, IllegalArgumentException {
-        if(symbol.isEmpty() && state.isAcceptState()){
-            return true;
-        }
-        else if (symbol.isEmpty()) {
-            return false;
-        }
-        if(!alphabet.contains(symbol.peek())){
-            throw new IllegalArgumentException();
-        }
-        Optional<State> nextState = getNextState(state, symbol.poll());
-        if(nextState.isPresent()){
-            return run(nextState.get(), symbol);
+        while (!symbol.isEmpty()) {
+            if(!alphabet.contains(symbol.peek())){
+                throw new IllegalArgumentException();
+            }
+            Optional<State> nextState = getNextState(state, symbol.poll());
+            if(!nextState.isPresent()){
+                throw new IllegalStateException();
+            }
+            state = nextState.get();
         }
-        throw new IllegalStateException();
+        return state.isAcceptState();
     }
 
     private Optional<State> getNextState(State state, T alphabet){
@@ -121,6 +121,13 @@ public class Automaton<T> {
                 .map(Transition::getOutputState).findFirst();
     }
 
+    /**
+     * @return the array-based form of this automaton, built from its current transitions.
+     */
+    public CompiledAutomaton<T> compile() {
+        return new CompiledAutomaton<>(this);
+    }
+
     public int size() {
         return this.getStates().size();
     }
@@ -19,18 +19,53 @@ import com.google.common.collect.Sets;
 import java.util.*;
 
 public class AutomatonTemplate {
+    /* the symbol of the all-zero guard, i.e. of every activity outside the alphabet */
+    private static final int OTHER = -1;
+
     private final List<String> alphabet;
     private final Set<String> transitions;
     private final Set<Integer> states;
     private final Integer init;
     private final Set<Integer> accepting_states;
 
+    private final List<Edge> edges = new ArrayList<>();
+
     private final HashMap<Integer, State> statesMap = new HashMap<>();
     private final Set<Transition<String>> deadEndTransitions = new HashSet<>();
 
-    private final Set<String> deadEnds = new HashSet<>();
+    private final List<Edge> deadEnds = new ArrayList<>();
     private final Set<String> seenActivities = new HashSet<>();
 
+    /* transitions of the STRIPS instantiations, shared across calls as their states are */
+    private Set<Transition<String>> alphabetTransitions;
+    private final Map<String, List<Transition<String>>> otherTransitions = new HashMap<>();
+
+    /*
+     * A transition parsed once from its "src,guard,dst" string. The symbol is the index in the alphabet of the first
+     * activity of the guard, OTHER for the all-zero guard.
+     */
+    private static final class Edge {
+        private final String label;
+        private final int source;
+        private final BitSet guard = new BitSet();
+        private final int symbol;
+        private final int destination;
+
+        private Edge(String label) {
+            this.label = label;
+            int first = label.indexOf(',');
+            int last = label.lastIndexOf(',');
+            this.source = Integer.parseInt(label.substring(0, first));
+            this.destination = Integer.parseInt(label.substring(last + 1));
+            for (int i = first + 1; i < last; i++) {
+                if (label.charAt(i) == '1') {
+                    this.guard.set(i - first - 1);
+                }
+            }
+            this.symbol = this.guard.isEmpty() ? OTHER : this.guard.nextSetBit(0);
+        }
+    }
+
     public AutomatonTemplate(List<String> alphabet, Set<String> transitions, Set<Integer> states, int init, Set<Integer> accepting) {
         this.alphabet = alphabet;
         this.transitions = transitions;
@@ -40,6 +75,9 @@ public class AutomatonTemplate {
         for (Integer s : this.states) {
             this.statesMap.put(s, new State(String.valueOf(s), this.init.equals(s), this.accepting_states.contains(s)));
         }
+        for (String t : this.transitions) {
+            this.edges.add(new Edge(t));
+        }
     }
 
     public List<String> getAlphabet() {
@@ -47,20 +85,17 @@ public class AutomatonTemplate {
     }
 
     private void updateDeadEndsTrans(Sets.SetView<String> diff) {
-        for (String t : this.deadEnds) {
-            String[] split_t = t.split(",");
+        for (Edge e : this.deadEnds) {
             for (String act: diff) {
-                this.deadEndTransitions.add(new Transition<>(this.statesMap.get(Integer.parseInt(split_t[0])
-                ), act, this.statesMap.get(-1)));
+                this.deadEndTransitions.add(new Transition<>(this.statesMap.get(e.source), act, this.statesMap.get(-1)));
             }
         }
     }
 
     private void _trimming(HashSet<String> repoActivity) {
         HashSet<Integer> noSink = new HashSet<>(this.accepting_states);
-        for (String t : this.transitions) {
-            String[] split_t = t.split(",");
-            noSink.add(Integer.parseInt(split_t[0]));
+        for (Edge e : this.edges) {
+            noSink.add(e.source);
         }
         HashSet<Integer> to_trim = new HashSet<>(this.states);
         to_trim.removeAll(noSink);
@@ -69,47 +104,44 @@ public class AutomatonTemplate {
             Integer state_to_trim = to_trim.iterator().next();
             this.statesMap.remove(state_to_trim);
 
-            HashSet<String> newTransitions = new HashSet<>(this.transitions);
-            for (String t : this.transitions) {
-                String[] split_t = t.split(",");
-                int sum = 0;
-                for (int i=0; i<split_t[1].length(); i++) {
-                    char ch = split_t[1].charAt(i);
-                    sum += Integer.parseInt(String.valueOf(ch));
-                }
-                if (! noSink.contains(Integer.parseInt(split_t[2]))) {
+            Iterator<Edge> it = this.edges.iterator();
+            while (it.hasNext()) {
+                Edge e = it.next();
+                if (! noSink.contains(e.destination)) {
                     State sink = new State("ink", false, false);
                     this.statesMap.put(-1, sink);
+                    int sum = e.guard.cardinality();
                     if (sum > 1) {
                         continue;
                     }
                     else if (sum == 0) {
-                        this.deadEnds.add(t);
+                        this.deadEnds.add(e);
                         HashSet<String> setDifference = new HashSet<>(repoActivity);
                         this.alphabet.forEach(setDifference::remove);
                         for (String s : setDifference) {
-                            this.deadEndTransitions.add(
-                                    new Transition<>(this.statesMap.get(Integer.parseInt(split_t[0])
-                                    ), s, sink)
-                            );
+                            this.deadEndTransitions.add(new Transition<>(this.statesMap.get(e.source), s, sink));
                         }
                         seenActivities.addAll(setDifference);
                     }
                     else {
                         this.deadEndTransitions.add(
-                                new Transition<>(this.statesMap.get(Integer.parseInt(split_t[0])),
-                                        this.alphabet.get(split_t[1].indexOf("1")),
-                                        sink)
+                                new Transition<>(this.statesMap.get(e.source), this.alphabet.get(e.symbol), sink)
                         );
                     }
-                    newTransitions.remove(t);
+                    it.remove();
+                    this.transitions.remove(e.label);
                 }
             }
-            this.transitions.retainAll(newTransitions);
+            this.alphabetTransitions = null;
+            this.otherTransitions.clear();
         }
     }
 
-    public Automaton<String> computeAutomatonNoDeadEnds(HashSet<String> repoActivity) {
+    /*
+     * Trimming and dead-end transitions are computed incrementally across calls, hence the calls are serialized.
+     * So are the transitions: only the activities never seen before get new ones.
+     */
+    public synchronized Automaton<String> computeAutomatonNoDeadEnds(HashSet<String> repoActivity) {
         this._trimming(repoActivity);
         this.alphabet.forEach(repoActivity::remove);
         Sets.SetView<String> difference = Sets.difference(repoActivity, this.seenActivities);
@@ -117,19 +149,18 @@ public class AutomatonTemplate {
             this.updateDeadEndsTrans(difference);
             this.seenActivities.addAll(difference);
         }
-        Set<Transition<String>> transitions = new HashSet<>();
-        for (String t : this.transitions) {
-            String[] _t = t.split(",");
-            if (_t[1].matches("0+")) {
-                for (String r : repoActivity) {
-                    transitions.add(new Transition<>(this.statesMap.get(Integer.parseInt(_t[0])),
-                            r, this.statesMap.get(Integer.parseInt(_t[2]))));
+        if (this.alphabetTransitions == null) {
+            this.alphabetTransitions = new HashSet<>();
+            for (Edge e : this.edges) {
+                if (e.symbol != OTHER) {
+                    this.alphabetTransitions.add(new Transition<>(this.statesMap.get(e.source),
+                            this.alphabet.get(e.symbol), this.statesMap.get(e.destination)));
                 }
             }
-            else {
-                transitions.add(new Transition<>(this.statesMap.get(Integer.parseInt(_t[0])),
-                        this.alphabet.get(_t[1].indexOf("1")), this.statesMap.get(Integer.parseInt(_t[2]))));
-            }
+        }
+        Set<Transition<String>> transitions = new HashSet<>(this.alphabetTransitions);
+        for (String r : repoActivity) {
+            transitions.addAll(this.otherTransitions.computeIfAbsent(r, this::_otherTransitions));
         }
         HashSet<String> new_alphabet = new HashSet<>(this.alphabet);
         new_alphabet.addAll(repoActivity);
@@ -140,34 +171,322 @@ public class AutomatonTemplate {
         return automaton;
     }
 
+    private List<Transition<String>> _otherTransitions(String activity) {
+        List<Transition<String>> transitions = new ArrayList<>();
+        for (Edge e : this.edges) {
+            if (e.symbol == OTHER) {
+                transitions.add(new Transition<>(this.statesMap.get(e.source), activity, this.statesMap.get(e.destination)));
+            }
+        }
+        return transitions;
+    }
+
+    /*
+     * Every call builds its own states, so concurrent instantiations of the same template do not interfere.
+     */
     public Automaton<String> computeAutomatonWithDeadEnds(HashSet<String> repoActivity) {
         this.alphabet.forEach(repoActivity::remove);
+        HashMap<Integer, State> statesMap = new HashMap<>();
         for (Integer s : this.states) {
-            this.statesMap.put(s, new State(String.valueOf(s), this.init.equals(s), this.accepting_states.contains(s)));
+            statesMap.put(s, new State(String.valueOf(s), this.init.equals(s), this.accepting_states.contains(s)));
         }
         Set<Transition<String>> transitions = new HashSet<>();
-        for (String t : this.transitions) {
-            String[] _t = t.split(",");
-            if (_t[1].matches("0+")) {
+        for (Edge e : this.edges) {
+            State source = statesMap.get(e.source);
+            State destination = statesMap.get(e.destination);
+            if (e.symbol == OTHER) {
                 for (String r : repoActivity) {
-                    transitions.add(new Transition<>(this.statesMap.get(Integer.parseInt(_t[0])),
-                            r, this.statesMap.get(Integer.parseInt(_t[2]))));
+                    transitions.add(new Transition<>(source, r, destination));
                 }
             }
             else {
-                transitions.add(new Transition<>(this.statesMap.get(Integer.parseInt(_t[0])),
-                        this.alphabet.get(_t[1].indexOf("1")), this.statesMap.get(Integer.parseInt(_t[2]))));
+                transitions.add(new Transition<>(source, this.alphabet.get(e.symbol), destination));
             }
         }
         HashSet<String> new_alphabet = new HashSet<>(this.alphabet);
         new_alphabet.addAll(repoActivity);
-        Automaton<String> automaton = new Automaton<>(new_alphabet, new HashSet<>(this.statesMap.values()), transitions,
+        Automaton<String> automaton = new Automaton<>(new_alphabet, new HashSet<>(statesMap.values()), transitions,
                 new HashSet<>());
         automaton.getStates().forEach(s -> s.setAutomatonId(automaton.getId()));
         automaton.getTransitionFunction().forEach(t -> t.setAutomatonId(automaton.getId()));
         return automaton;
     }
 
+    /**
+     * @return an equivalent template with the fewest states: states unreachable from the initial one are dropped and
+     * equivalent states are merged (Hopcroft), in particular all the states from which no accepting state can be
+     * reached end up in a single sink. Every activity outside the alphabet behaves as the all-zero guard, so
+     * minimizing over the alphabet plus one "other" symbol is the same as minimizing over the full log alphabet.
+     * <p>
+     * Each merged state is named after the smallest state it replaces. This template must not have been trimmed by a
+     * STRIPS instantiation yet.
+     */
+    public AutomatonTemplate minimize() {
+        int k = this.alphabet.size();
+        if (k == 0) {
+            return this;
+        }
+        Map<Integer, Integer[]> out = this._successors();
+        // reachable states, a missing transition stays in the state
+        List<Integer> names = new ArrayList<>();
+        Map<Integer, Integer> ids = new HashMap<>();
+        names.add(this.init);
+        ids.put(this.init, 0);
+        List<int[]> delta = new ArrayList<>();
+        for (int q = 0; q < names.size(); q++) {
+            Integer[] succ = out.getOrDefault(names.get(q), new Integer[k + 1]);
+            int[] row = new int[k + 1];
+            for (int c = 0; c <= k; c++) {
+                Integer next = succ[c] == null ? names.get(q) : succ[c];
+                if (!ids.containsKey(next)) {
+                    ids.put(next, names.size());
+                    names.add(next);
+                }
+                row[c] = ids.get(next);
+            }
+            delta.add(row);
+        }
+        boolean[] accepting_ids = new boolean[names.size()];
+        for (int q = 0; q < names.size(); q++) {
+            accepting_ids[q] = this.accepting_states.contains(names.get(q));
+        }
+        int[] block = _hopcroft(delta, accepting_ids, k + 1);
+
+        int[] representative = new int[names.size()];
+        Arrays.fill(representative, Integer.MAX_VALUE);
+        for (int q = 0; q < names.size(); q++) {
+            representative[block[q]] = Math.min(representative[block[q]], names.get(q));
+        }
+        Set<Integer> states = new HashSet<>();
+        Set<Integer> accepting = new HashSet<>();
+        Set<String> transitions = new HashSet<>();
+        for (int q = 0; q < names.size(); q++) {
+            int r = representative[block[q]];
+            if (r != names.get(q)) {
+                continue;
+            }
+            states.add(r);
+            if (this.accepting_states.contains(r)) {
+                accepting.add(r);
+            }
+            for (int c = 0; c <= k; c++) {
+                int next = representative[block[delta.get(q)[c]]];
+                if (next != r) {
+                    transitions.add(String.format("%d,%s,%d", r, _guard(c, k), next));
+                }
+            }
+        }
+        return new AutomatonTemplate(new ArrayList<>(this.alphabet), transitions, states,
+                representative[block[0]], accepting);
+    }
+
+    /**
+     * @return the synchronous product of the templates, minimized, over the union of their alphabets: a state is
+     * accepting if every component is. Null if the product has more than maxStates states before minimization.
+     */
+    public static AutomatonTemplate product(Collection<AutomatonTemplate> templates, int maxStates) {
+        List<AutomatonTemplate> components = new ArrayList<>(templates);
+        Set<String> activities = new TreeSet<>();
+        components.forEach(at -> activities.addAll(at.getAlphabet()));
+        List<String> alphabet = new ArrayList<>(activities);
+        int k = alphabet.size();
+        // symbols[j][c] is the symbol of activity c (k: any other activity) in component j
+        int[][] symbols = new int[components.size()][k + 1];
+        List<Map<Integer, Integer[]>> successors = new ArrayList<>();
+        for (int j = 0; j < components.size(); j++) {
+            List<String> component_alphabet = components.get(j).getAlphabet();
+            for (int c = 0; c <= k; c++) {
+                int symbol = c < k ? component_alphabet.indexOf(alphabet.get(c)) : -1;
+                symbols[j][c] = symbol < 0 ? component_alphabet.size() : symbol;
+            }
+            successors.add(components.get(j)._successors());
+        }
+
+        List<List<Integer>> tuples = new ArrayList<>();
+        Map<List<Integer>, Integer> ids = new HashMap<>();
+        List<Integer> init = new ArrayList<>();
+        components.forEach(at -> init.add(at.init));
+        tuples.add(init);
+        ids.put(init, 0);
+        Set<Integer> accepting = new HashSet<>();
+        Set<String> transitions = new HashSet<>();
+        for (int q = 0; q < tuples.size(); q++) {
+            List<Integer> tuple = tuples.get(q);
+            boolean accept = true;
+            for (int j = 0; j < components.size(); j++) {
+                accept &= components.get(j).accepting_states.contains(tuple.get(j));
+            }
+            if (accept) {
+                accepting.add(q);
+            }
+            for (int c = 0; c <= k; c++) {
+                List<Integer> next = new ArrayList<>(tuple.size());
+                for (int j = 0; j < components.size(); j++) {
+                    Integer[] succ = successors.get(j).get(tuple.get(j));
+                    next.add(succ == null || succ[symbols[j][c]] == null ? tuple.get(j) : succ[symbols[j][c]]);
+                }
+                Integer id = ids.get(next);
+                if (id == null) {
+                    if (tuples.size() >= maxStates) {
+                        return null;
+                    }
+                    id = tuples.size();
+                    ids.put(next, id);
+                    tuples.add(next);
+                }
+                if (id != q) {
+                    transitions.add(String.format("%d,%s,%d", q, _guard(c, k), id));
+                }
+            }
+        }
+        Set<Integer> states = new HashSet<>();
+        for (int q = 0; q < tuples.size(); q++) {
+            states.add(q);
+        }
+        return new AutomatonTemplate(alphabet, transitions, states, 0, accepting).minimize();
+    }
+
+    /**
+     * @return the behaviour of every symbol, 0..k-1 for the activities of the alphabet and k for any other activity:
+     * two symbols have the same behaviour iff they lead every state to the same successor.
+     */
+    public int[] getBehaviours() {
+        int k = this.alphabet.size();
+        Map<Integer, Integer[]> out = this._successors();
+        List<Integer> states = new ArrayList<>(new TreeSet<>(this.states));
+        Map<List<Integer>, Integer> ids = new HashMap<>();
+        int[] behaviours = new int[k + 1];
+        for (int c = 0; c <= k; c++) {
+            List<Integer> column = new ArrayList<>(states.size());
+            for (Integer q : states) {
+                Integer[] succ = out.get(q);
+                column.add(succ == null || succ[c] == null ? q : succ[c]);
+            }
+            Integer id = ids.get(column);
+            if (id == null) {
+                id = ids.size();
+                ids.put(column, id);
+            }
+            behaviours[c] = id;
+        }
+        return behaviours;
+    }
+
+    /**
+     * @return true iff the activities outside the alphabet never change the state, i.e. every "other" edge is a
+     * self-loop.
+     */
+    public boolean isOtherIdle() {
+        for (Edge e : this.edges) {
+            if (e.symbol == OTHER && e.source != e.destination) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The successors of each state, by symbol: 0..k-1 are the activities of the alphabet and k is any other activity.
+     * A missing successor means the automaton stays in its state.
+     */
+    private Map<Integer, Integer[]> _successors() {
+        int k = this.alphabet.size();
+        Map<Integer, Integer[]> out = new HashMap<>();
+        for (Edge e : this.edges) {
+            int symbol = e.symbol == OTHER ? k : e.symbol;
+            out.computeIfAbsent(e.source, q -> new Integer[k + 1])[symbol] = e.destination;
+        }
+        return out;
+    }
+
+    /*
+     * The one-hot guard of symbol c over k activities, all zeros for any other activity.
+     */
+    private static String _guard(int c, int k) {
+        char[] guard = new char[k];
+        Arrays.fill(guard, '0');
+        if (c < k) {
+            guard[c] = '1';
+        }
+        return new String(guard);
+    }
+
+    public int size() {
+        return this.states.size();
+    }
+
+    /*
+     * Hopcroft's partition refinement. Returns the block of every state; a block split in two keeps its id for one
+     * half, so a pending splitter still covers both halves once the other one is added.
+     */
+    private static int[] _hopcroft(List<int[]> delta, boolean[] accepting, int nbSymbols) {
+        int n = delta.size();
+        List<List<Integer>> predecessors = new ArrayList<>();
+        for (int i = 0; i < n * nbSymbols; i++) {
+            predecessors.add(new ArrayList<>());
+        }
+        for (int q = 0; q < n; q++) {
+            for (int c = 0; c < nbSymbols; c++) {
+                predecessors.get(delta.get(q)[c] * nbSymbols + c).add(q);
+            }
+        }
+        int[] block = new int[n];
+        List<Set<Integer>> blocks = new ArrayList<>();
+        Set<Integer> in = new HashSet<>();
+        Set<Integer> notIn = new HashSet<>();
+        for (int q = 0; q < n; q++) {
+            (accepting[q] ? in : notIn).add(q);
+        }
+        for (Set<Integer> b : Arrays.asList(in, notIn)) {
+            if (!b.isEmpty()) {
+                for (int q : b) {
+                    block[q] = blocks.size();
+                }
+                blocks.add(b);
+            }
+        }
+        Deque<Integer> splitters = new ArrayDeque<>();
+        Set<Integer> pending = new HashSet<>();
+        int smallest = blocks.size() == 2 && blocks.get(1).size() < blocks.get(0).size() ? 1 : 0;
+        splitters.add(smallest);
+        pending.add(smallest);
+        while (!splitters.isEmpty()) {
+            int splitter = splitters.poll();
+            pending.remove(splitter);
+            List<Integer> members = new ArrayList<>(blocks.get(splitter));
+            for (int c = 0; c < nbSymbols; c++) {
+                // the predecessors through c of the splitter, grouped by block
+                Map<Integer, Set<Integer>> touched = new HashMap<>();
+                for (int q : members) {
+                    for (int p : predecessors.get(q * nbSymbols + c)) {
+                        touched.computeIfAbsent(block[p], b -> new HashSet<>()).add(p);
+                    }
+                }
+                for (Map.Entry<Integer, Set<Integer>> e : touched.entrySet()) {
+                    Set<Integer> y = blocks.get(e.getKey());
+                    if (e.getValue().size() == y.size()) {
+                        continue;
+                    }
+                    y.removeAll(e.getValue());
+                    int id = blocks.size();
+                    blocks.add(e.getValue());
+                    for (int q : e.getValue()) {
+                        block[q] = id;
+                    }
+                    if (pending.contains(e.getKey())) {
+                        splitters.add(id);
+                        pending.add(id);
+                    } else {
+                        int smaller = y.size() <= e.getValue().size() ? e.getKey() : id;
+                        splitters.add(smaller);
+                        pending.add(smaller);
+                    }
+                }
+            }
+        }
+        return block;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,136 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.automaton;
+
+import java.util.*;
+
+/**
+ * Immutable, array-based form of an {@link Automaton}: states and symbols are numbered densely, the transition
+ * function is a flat int table and the accepting states a bitset, so that stepping is a single array access.
+ * <p>
+ * As in the PDDL encodings, a missing transition (including any symbol outside the alphabet) leaves the automaton in
+ * its state. Dead-end transitions are part of the table.
+ */
+public class CompiledAutomaton<T> {
+    private final List<T> symbols;
+    private final Map<T, Integer> symbolIds;
+    private final List<State> states;
+    private final int[] delta;
+    private final BitSet accept;
+    private final int init;
+
+    public CompiledAutomaton(Automaton<T> automaton) {
+        this.symbols = new ArrayList<>();
+        this.symbolIds = new HashMap<>();
+        automaton.getAlphabet().forEach(this::_addSymbol);
+        Set<Transition<T>> transitions = automaton.getAllTransitions();
+        // dead ends may be labelled with activities added after the automaton was built
+        transitions.forEach(t -> this._addSymbol(t.getSymbol()));
+        this.states = new ArrayList<>(automaton.getStates());
+        Map<State, Integer> stateIds = new HashMap<>();
+        for (int i = 0; i < this.states.size(); i++) {
+            stateIds.put(this.states.get(i), i);
+        }
+        int nbSymbols = this.symbols.size();
+        this.delta = new int[this.states.size() * nbSymbols];
+        for (int q = 0; q < this.states.size(); q++) {
+            Arrays.fill(this.delta, q * nbSymbols, (q + 1) * nbSymbols, q);
+        }
+        for (Transition<T> t : transitions) {
+            this.delta[stateIds.get(t.getInputState()) * nbSymbols + this.symbolIds.get(t.getSymbol())] =
+                    stateIds.get(t.getOutputState());
+        }
+        this.accept = new BitSet(this.states.size());
+        for (int q = 0; q < this.states.size(); q++) {
+            this.accept.set(q, this.states.get(q).isAcceptState());
+        }
+        this.init = stateIds.get(automaton.getInitState());
+    }
+
+    private void _addSymbol(T symbol) {
+        if (!this.symbolIds.containsKey(symbol)) {
+            this.symbolIds.put(symbol, this.symbols.size());
+            this.symbols.add(symbol);
+        }
+    }
+
+    public int getNbStates() {
+        return this.states.size();
+    }
+
+    public int getNbSymbols() {
+        return this.symbols.size();
+    }
+
+    public int getInit() {
+        return init;
+    }
+
+    public boolean isAccepting(int state) {
+        return this.accept.get(state);
+    }
+
+    public State getState(int state) {
+        return this.states.get(state);
+    }
+
+    public T getSymbol(int symbol) {
+        return this.symbols.get(symbol);
+    }
+
+    /**
+     * @return the id of the symbol, or -1 if it is not in the alphabet.
+     */
+    public int getSymbolId(T symbol) {
+        Integer id = this.symbolIds.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param symbol a symbol id, or -1 for a symbol outside the alphabet.
+     */
+    public int step(int state, int symbol) {
+        return symbol < 0 ? state : this.delta[state * this.symbols.size() + symbol];
+    }
+
+    public int step(int state, T symbol) {
+        return this.step(state, this.getSymbolId(symbol));
+    }
+
+    /**
+     * @return the state reached from the initial state after reading the word.
+     */
+    public int run(Iterable<T> word) {
+        int state = this.init;
+        for (T symbol : word) {
+            state = this.step(state, symbol);
+        }
+        return state;
+    }
+
+    public boolean accepts(Iterable<T> word) {
+        return this.isAccepting(this.run(word));
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledAutomaton{" +
+                "symbols=" + symbols +
+                ", states=" + states +
+                ", init=" + init +
+                ", accept=" + accept +
+                '}';
+    }
+}
@@ -15,10 +15,19 @@
 package trace_alignment.automaton;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import trace_alignment.parsing.ParseLydiaDFA;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LydiaAutomaton {
+    /* the Lydia executable run by the batch translations, replaced by a stub in the tests */
+    static String executable = "lydia";
 
     public static String callLydia(String formula, boolean isLTLf) throws IOException {
         String s;
@@ -53,4 +62,117 @@ public class LydiaAutomaton {
             return "ERROR";
         }
     }
+
+    /**
+     * Translate a batch of formulas running up to nbProcesses Lydia processes at once. Lydia is executed directly and
+     * reads the formula from its standard input.
+     *
+     * @param timeout per-formula timeout in seconds, 0 for no timeout.
+     * @return the Lydia outputs, in the same order as the formulas.
+     * @throws IOException reporting every formula that failed, timed out or did not produce a DFA.
+     */
+    public static List<String> callLydia(List<String> formulas, boolean isLTLf, int nbProcesses, long timeout)
+            throws IOException {
+        return _batch(formulas, isLTLf, nbProcesses, timeout, in -> {
+            String result = IOUtils.toString(in, StandardCharsets.UTF_8);
+            if (!result.contains("DFA for formula")) {
+                throw new IOException(result.trim());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Same as {@link #callLydia(List, boolean, int, long)}, parsing the DFAs straight from the output of Lydia as it is
+     * produced, without holding the output in memory.
+     */
+    public static List<AutomatonTemplate> translate(List<String> formulas, boolean isLTLf, int nbProcesses,
+                                                    long timeout) throws IOException {
+        return _batch(formulas, isLTLf, nbProcesses, timeout, ParseLydiaDFA::parseMONAprint);
+    }
+
+    private interface OutputReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    private static <T> List<T> _batch(List<String> formulas, boolean isLTLf, int nbProcesses, long timeout,
+                                      OutputReader<T> reader) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(nbProcesses, formulas.size())));
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (String formula : formulas) {
+                futures.add(pool.submit(() -> runLydia(formula, isLTLf, timeout, timer, reader)));
+            }
+            List<T> results = new ArrayList<>();
+            StringBuilder failures = new StringBuilder();
+            for (int i = 0; i < formulas.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(null);
+                    failures.append(String.format("%n  %s: %s", formulas.get(i), e.getCause().getMessage()));
+                }
+            }
+            if (failures.length() > 0) {
+                throw new IOException("Lydia failed on:" + failures);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Lydia");
+        } finally {
+            pool.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+
+    private static <T> T runLydia(String formula, boolean isLTLf, long timeout, ScheduledExecutorService timer,
+                                  OutputReader<T> reader) throws IOException, InterruptedException {
+        ProcessBuilder proc_builder = new ProcessBuilder(executable, "-q", "-p", "-l", isLTLf ? "ltlf" : "ldlf", "-f",
+                "/dev/stdin");
+        proc_builder.redirectErrorStream(true);
+        Process p = proc_builder.start();
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> killer = null;
+        if (timeout > 0) {
+            killer = timer.schedule(() -> {
+                timedOut.set(true);
+                p.destroyForcibly();
+            }, timeout, TimeUnit.SECONDS);
+        }
+        try {
+            T result = null;
+            IOException failure = null;
+            try {
+                try (Writer stdin = new OutputStreamWriter(p.getOutputStream(), StandardCharsets.UTF_8)) {
+                    stdin.write(formula);
+                } catch (IOException e) {
+                    // Lydia exited without reading the formula, its output and exit code tell why
+                }
+                try (InputStream stdout = p.getInputStream()) {
+                    result = reader.read(stdout);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (timedOut.get()) {
+                throw new IOException(String.format("timed out after %d s", timeout));
+            }
+            int exitCode = p.waitFor();
+            if (exitCode != 0) {
+                throw new IOException(String.format("exit code %d: %s", exitCode,
+                        failure == null ? "" : failure.getMessage()));
+            }
+            if (failure != null) {
+                throw new IOException(String.format("invalid output: %s", failure.getMessage()));
+            }
+            return result;
+        } finally {
+            if (killer != null) {
+                killer.cancel(false);
+            }
+            p.destroy();
+        }
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.automaton;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent, content-addressed cache of Lydia outputs. An entry is keyed by the formula text, the logic (LTLf or
+ * LDLf) and the version of the installed Lydia, so upgrading Lydia never serves stale automata.
+ */
+public class LydiaCache {
+    private final File directory;
+    private String lydiaVersion;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public LydiaCache(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Cannot create cache directory %s", directory));
+        }
+    }
+
+    /**
+     * @return the cached Lydia output for the formula, or null on a cache miss.
+     */
+    public String lookup(String formula, boolean isLTLf) throws IOException {
+        File entry = this.entry(formula, isLTLf);
+        if (entry.isFile()) {
+            this.hits.incrementAndGet();
+            return FileUtils.readFileToString(entry, StandardCharsets.UTF_8);
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Only well-formed outputs are stored. The entry is moved in place, so concurrent runs never read a partial file.
+     */
+    public void store(String formula, boolean isLTLf, String automaton_print) throws IOException {
+        if (!automaton_print.contains("DFA for formula")) {
+            return;
+        }
+        File tmp = File.createTempFile("entry", ".tmp", this.directory);
+        try {
+            FileUtils.writeStringToFile(tmp, automaton_print, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), this.entry(formula, isLTLf).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private File entry(String formula, boolean isLTLf) {
+        return new File(this.directory, this.key(formula, isLTLf) + ".mona");
+    }
+
+    String key(String formula, boolean isLTLf) {
+        String content = String.format("%s\n%s\n%s", this.getLydiaVersion(), isLTLf ? "ltlf" : "ldlf", formula.trim());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(content.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized String getLydiaVersion() {
+        if (this.lydiaVersion == null) {
+            this.lydiaVersion = LydiaCache.lydiaVersion();
+        }
+        return this.lydiaVersion;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private static String lydiaVersion() {
+        try {
+            ProcessBuilder proc_builder = new ProcessBuilder("lydia", "--version");
+            proc_builder.redirectErrorStream(true);
+            Process p = proc_builder.start();
+            String version;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                StringBuilder builder = new StringBuilder();
+                String s;
+                while ((s = br.readLine()) != null) {
+                    builder.append(s.trim());
+                }
+                version = builder.toString();
+            }
+            p.waitFor();
+            return version.isEmpty() ? "unknown" : version;
+        } catch (IOException | InterruptedException e) {
+            return "unknown";
+        }
+    }
+}
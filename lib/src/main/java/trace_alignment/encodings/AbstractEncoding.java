@@ -16,6 +16,13 @@ package trace_alignment.encodings;
 
 import trace_alignment.automaton.Automaton;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -28,6 +35,7 @@ public abstract class AbstractEncoding {
     private final HashSet<String> repoActivity;
     private final Automaton<String> traceAutomaton;
     private final Set<Automaton<String>> constraintAutomata;
+    private PddlFragments fragments;
 
     public AbstractEncoding(String name, HashSet<String> ra, Automaton<String> ta, Set<Automaton<String>> ca, boolean onlyProblem) {
         if (name == null || ra == null || ta == null || ca == null) {
@@ -41,8 +49,66 @@ public abstract class AbstractEncoding {
         }
     }
 
-    abstract public StringBuilder generateDomainString();
-    abstract public StringBuilder generateProblemString(int trace_id);
+    /**
+     * Splice the constraint sections of the problem from fragments shared with the encodings of other traces, which
+     * must cover the same constraint automata and activities.
+     */
+    public AbstractEncoding setFragments(PddlFragments fragments) {
+        if (fragments != null && !fragments.covers(this.constraintAutomata, this.repoActivity)) {
+            throw new IllegalArgumentException("The fragments were rendered for other automata or activities");
+        }
+        this.fragments = fragments;
+        return this;
+    }
+
+    /*
+     * A section of the problem that only depends on the constraint automata and the activities.
+     */
+    protected void writeFragment(PddlWriter writer, String section, PddlFragments.Fragment fragment) throws IOException {
+        if (this.fragments == null) {
+            fragment.write(writer);
+        } else {
+            this.fragments.write(writer, this.name + "/" + section, fragment);
+        }
+    }
+
+    abstract public void writeDomain(PddlWriter writer) throws IOException;
+    abstract public void writeProblem(PddlWriter writer, int trace_id) throws IOException;
+
+    /**
+     * Write the domain (unless the encoding only produces problems) and the problem of a trace, reusing the buffer
+     * of the writer.
+     */
+    public void write(PddlWriter writer, File domainFile, File problemFile, int trace_id) throws IOException {
+        if (! this.onlyProblem) {
+            try (PddlWriter w = writer.open(domainFile)) {
+                this.writeDomain(w);
+            }
+        }
+        try (PddlWriter w = writer.open(problemFile)) {
+            this.writeProblem(w, trace_id);
+        }
+    }
+
+    public StringBuilder generateDomainString() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PddlWriter w = new PddlWriter(ByteBuffer.allocate(8192)).open(Channels.newChannel(out))) {
+            this.writeDomain(w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new StringBuilder(new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    public StringBuilder generateProblemString(int trace_id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PddlWriter w = new PddlWriter(ByteBuffer.allocate(8192)).open(Channels.newChannel(out))) {
+            this.writeProblem(w, trace_id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new StringBuilder(new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
 
     public List<StringBuilder> generateString(int trace_id) {
         List<StringBuilder> result = new ArrayList<>();
@@ -53,6 +119,10 @@ public abstract class AbstractEncoding {
         return result;
     }
 
+    public boolean isOnlyProblem() {
+        return onlyProblem;
+    }
+
     public String getName() {
         return name;
     }
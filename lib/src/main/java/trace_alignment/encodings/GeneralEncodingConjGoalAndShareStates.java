@@ -16,6 +16,7 @@ package trace_alignment.encodings;
 
 import trace_alignment.automaton.*;
 
+import java.io.IOException;
 import java.util.*;
 
 public class GeneralEncodingConjGoalAndShareStates extends AbstractEncoding {
@@ -34,8 +35,7 @@ public class GeneralEncodingConjGoalAndShareStates extends AbstractEncoding {
     }
 
     @Override
-    public StringBuilder generateDomainString() {
-        StringBuilder PDDL_domain_buffer = new StringBuilder();
+    public void writeDomain(PddlWriter PDDL_domain_buffer) throws IOException {
         PDDL_domain_buffer.append("(define (domain alignment)\n");
         PDDL_domain_buffer.append("(:requirements :typing :disjunctive-preconditions :conditional-effects :universal-preconditions :action-costs)\n");
         PDDL_domain_buffer.append("(:types trace_state automaton_state - state act dummy_act - activity automaton)\n");
@@ -80,33 +80,35 @@ public class GeneralEncodingConjGoalAndShareStates extends AbstractEncoding {
                 "\t\t\t(when (and (cur_state ?a ?s1) (dummy_trans ?a ?s1 ?de ?s2))\n" +
                 "\t\t\t\t(and (not (cur_state ?a ?s1)) (cur_state ?a ?s2))\n)\n)\n)\n");
         PDDL_domain_buffer.append(")");
-        return PDDL_domain_buffer;
     }
 
     @Override
-    public StringBuilder generateProblemString(int trace_id) {
-        StringBuilder PDDL_problem_buffer = new StringBuilder();
+    public void writeProblem(PddlWriter PDDL_problem_buffer, int trace_id) throws IOException {
         PDDL_problem_buffer.append("(define (problem p-trace-").append(trace_id).append(")\n");
         PDDL_problem_buffer.append("(:domain alignment)\n");
         PDDL_problem_buffer.append("(:objects\n");
-        for (Automaton<String> a : this.constraint_automata) {
-            PDDL_problem_buffer.append("a").append(a.getId());
-            PDDL_problem_buffer.append(" - automaton\n");
-        }
+        this.writeFragment(PDDL_problem_buffer, "automata", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                w.append("a").append(a.getId());
+                w.append(" - automaton\n");
+            }
+        });
         for (State s : this.trace_automaton.getStates()) {
             PDDL_problem_buffer.append("t").append(s.getName());
             PDDL_problem_buffer.append(" - trace_state\n");
         }
-        OptionalInt max_nb_states = this.constraint_automata.stream().mapToInt(Automaton::size).max();
-        for (int i=0; i<max_nb_states.getAsInt(); i++) {
-            PDDL_problem_buffer.append("s").append(i);
-            PDDL_problem_buffer.append(" - automaton_state\n");
-        }
-        PDDL_problem_buffer.append("gs - automaton_state\n");
-        for (String act: this.repoActivity) {
-            PDDL_problem_buffer.append(act).append(" - act\n");
-        }
-        PDDL_problem_buffer.append("dummy - dummy_act\n");
+        this.writeFragment(PDDL_problem_buffer, "objects", w -> {
+            OptionalInt max_nb_states = this.constraint_automata.stream().mapToInt(Automaton::size).max();
+            for (int i=0; i<max_nb_states.getAsInt(); i++) {
+                w.append("s").append(i);
+                w.append(" - automaton_state\n");
+            }
+            w.append("gs - automaton_state\n");
+            for (String act: this.repoActivity) {
+                w.id(act).append(" - act\n");
+            }
+            w.append("dummy - dummy_act\n");
+        });
         PDDL_problem_buffer.append(")\n");
         PDDL_problem_buffer.append("(:init\n(= (total-cost) 0)\n");
         PDDL_problem_buffer.append("(cur_state_trace t").append(this.trace_automaton.getInitState().getName()).append(")\n");
@@ -115,48 +117,51 @@ public class GeneralEncodingConjGoalAndShareStates extends AbstractEncoding {
             PDDL_problem_buffer.append("(trace_trans t")
                     .append(trans.getInputState().getName())
                     .append(" ")
-                    .append(trans.getSymbol())
+                    .id(trans.getSymbol())
                     .append(" t")
                     .append(trans.getOutputState().getName())
                     .append(")\n");
         }
-        for (Automaton<String> a : this.constraint_automata) {
-            PDDL_problem_buffer.append("(cur_state a").append(a.getId()).append(" s").append(a.getInitState().getName())
-                    .append(")\n");
-            for (Transition<String> trans : a.getTransitionFunction()) {
-                PDDL_problem_buffer.append("(automaton_trans a").append(a.getId())
-                        .append(" s").append(trans.getInputState().getName())
-                        .append(" ")
-                        .append(trans.getSymbol())
-                        .append(" ")
-                        .append("s").append(trans.getOutputState().getName())
+        this.writeFragment(PDDL_problem_buffer, "init", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                w.append("(cur_state a").append(a.getId()).append(" s").append(a.getInitState().getName())
                         .append(")\n");
-            }
-            List<State> automaton_accept = a.getAcceptStates();
-            if (automaton_accept.size() > 1) {
-                for (State s : automaton_accept) {
-                    PDDL_problem_buffer.append("(dummy_trans ")
-                            .append(String.format("a%s s%s", a.getId(), s.getName()))
-                            .append(" dummy gs)\n");
+                for (Transition<String> trans : a.getTransitionFunction()) {
+                    w.append("(automaton_trans a").append(a.getId())
+                            .append(" s").append(trans.getInputState().getName())
+                            .append(" ")
+                            .id(trans.getSymbol())
+                            .append(" ")
+                            .append("s").append(trans.getOutputState().getName())
+                            .append(")\n");
+                }
+                List<State> automaton_accept = a.getAcceptStates();
+                if (automaton_accept.size() > 1) {
+                    for (State s : automaton_accept) {
+                        w.append("(dummy_trans ")
+                                .append("a").append(a.getId()).append(" s").append(s.getName())
+                                .append(" dummy gs)\n");
+                    }
                 }
             }
-        }
+        });
         PDDL_problem_buffer.append(")\n");
         PDDL_problem_buffer.append("(:goal (and\n(cur_state_trace t")
                 .append(this.trace_automaton.getAcceptStates().get(0).getName()).append(")\n");
-        for (Automaton<?> a : this.constraint_automata) {
-            if (a.getAcceptStates().size() > 1) {
-                PDDL_problem_buffer.append("(cur_state a").append(a.getId()).append(" gs)\n");
-            }
-            else {
-                assert a.getAcceptStates().size() == 1;
-                PDDL_problem_buffer.append("(cur_state ")
-                        .append(String.format("a%s s%s)\n", a.getId(), a.getAcceptStates().get(0).getName()));
+        this.writeFragment(PDDL_problem_buffer, "goal", w -> {
+            for (Automaton<?> a : this.constraint_automata) {
+                if (a.getAcceptStates().size() > 1) {
+                    w.append("(cur_state a").append(a.getId()).append(" gs)\n");
+                }
+                else {
+                    assert a.getAcceptStates().size() == 1;
+                    w.append("(cur_state ")
+                            .append("a").append(a.getId()).append(" s").append(a.getAcceptStates().get(0).getName()).append(")\n");
+                }
             }
-        }
+        });
         PDDL_problem_buffer.append("))\n");
         PDDL_problem_buffer.append("(:metric minimize (total-cost))\n");
         PDDL_problem_buffer.append(")\n");
-        return PDDL_problem_buffer;
     }
 }
@@ -16,6 +16,7 @@ package trace_alignment.encodings;
 
 import trace_alignment.automaton.*;
 
+import java.io.IOException;
 import java.util.*;
 
 public class GeneralEncodingConjunctiveGoal extends AbstractEncoding {
@@ -35,8 +36,7 @@ public class GeneralEncodingConjunctiveGoal extends AbstractEncoding {
     }
 
     @Override
-    public StringBuilder generateDomainString() {
-        StringBuilder PDDL_domain_buffer = new StringBuilder();
+    public void writeDomain(PddlWriter PDDL_domain_buffer) throws IOException {
         PDDL_domain_buffer.append("(define (domain alignment)\n");
         PDDL_domain_buffer.append("(:requirements :typing :disjunctive-preconditions :conditional-effects :universal-preconditions :action-costs)\n");
         PDDL_domain_buffer.append("(:types trace_state automaton_state - state act dummy_act - activity)\n");
@@ -80,12 +80,10 @@ public class GeneralEncodingConjunctiveGoal extends AbstractEncoding {
                 "\t\t\t(when (and (cur_state ?s1) (dummy_trans ?s1 ?de ?s2))\n" +
                 "\t\t\t\t(and (not (cur_state ?s1)) (cur_state ?s2)))\n)\n)\n)\n");
         PDDL_domain_buffer.append(")");
-        return PDDL_domain_buffer;
     }
 
     @Override
-    public StringBuilder generateProblemString(int trace_id) {
-        StringBuilder PDDL_problem_buffer = new StringBuilder();
+    public void writeProblem(PddlWriter PDDL_problem_buffer, int trace_id) throws IOException {
         PDDL_problem_buffer.append("(define (problem p-trace-").append(trace_id).append(")\n");
         PDDL_problem_buffer.append("(:domain alignment)\n");
         PDDL_problem_buffer.append("(:objects\n");
@@ -93,19 +91,21 @@ public class GeneralEncodingConjunctiveGoal extends AbstractEncoding {
             PDDL_problem_buffer.append("t").append(s.getName());
             PDDL_problem_buffer.append(" - trace_state\n");
         }
-        for (Automaton<String> a : this.constraint_automata) {
-            for (State s : a.getStates()) {
-                PDDL_problem_buffer.append(String.format("s_%s_%s", a.getId(), s.getName()));
-                PDDL_problem_buffer.append(" - automaton_state\n");
+        this.writeFragment(PDDL_problem_buffer, "objects", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                for (State s : a.getStates()) {
+                    w.state(a.getId(), s.getName());
+                    w.append(" - automaton_state\n");
+                }
+                if (a.getAcceptStates().size() > 1) {
+                    w.append("gs_").append(a.getId()).append(" - automaton_state\n");
+                }
             }
-            if (a.getAcceptStates().size() > 1) {
-                PDDL_problem_buffer.append("gs_").append(a.getId()).append(" - automaton_state\n");
+            for (String act: this.repoActivity) {
+                w.id(act).append(" - act\n");
             }
-        }
-        for (String act: this.repoActivity) {
-            PDDL_problem_buffer.append(act).append(" - act\n");
-        }
-        PDDL_problem_buffer.append("dummy - dummy_act\n");
+            w.append("dummy - dummy_act\n");
+        });
         PDDL_problem_buffer.append(")\n");
         PDDL_problem_buffer.append("(:init\n(= (total-cost) 0)\n");
         PDDL_problem_buffer.append("(cur_state t").append(this.trace_automaton.getInitState().getName()).append(")\n");
@@ -114,50 +114,53 @@ public class GeneralEncodingConjunctiveGoal extends AbstractEncoding {
             PDDL_problem_buffer.append("(trace t")
                     .append(trans.getInputState().getName())
                     .append(" ")
-                    .append(trans.getSymbol())
+                    .id(trans.getSymbol())
                     .append(" t")
                     .append(trans.getOutputState().getName())
                     .append(")\n");
         }
-        for (Automaton<String> a : this.constraint_automata) {
-            PDDL_problem_buffer.append("(cur_state ")
-                    .append(String.format("s_%s_%s", a.getId(), a.getInitState().getName())).append(")\n");
-            for (Transition<String> trans : a.getTransitionFunction()) {
-                PDDL_problem_buffer.append("(automaton ")
-                        .append(String.format("s_%s_%s", a.getId(), trans.getInputState().getName()))
-                        .append(" ")
-                        .append(trans.getSymbol())
-                        .append(" ")
-                        .append(String.format("s_%s_%s", a.getId(), trans.getOutputState().getName()))
-                        .append(")\n");
-            }
-            List<State> automaton_accept = a.getAcceptStates();
-            if (automaton_accept.size() > 1) {
-                for (State s : automaton_accept) {
-                    PDDL_problem_buffer.append("(dummy_trans ")
-                            .append(String.format("s_%s_%s", a.getId(), s.getName()))
-                            .append(" dummy ").append("gs_").append(a.getId())
+        this.writeFragment(PDDL_problem_buffer, "init", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                w.append("(cur_state ")
+                        .state(a.getId(), a.getInitState().getName()).append(")\n");
+                for (Transition<String> trans : a.getTransitionFunction()) {
+                    w.append("(automaton ")
+                            .state(a.getId(), trans.getInputState().getName())
+                            .append(" ")
+                            .id(trans.getSymbol())
+                            .append(" ")
+                            .state(a.getId(), trans.getOutputState().getName())
                             .append(")\n");
                 }
+                List<State> automaton_accept = a.getAcceptStates();
+                if (automaton_accept.size() > 1) {
+                    for (State s : automaton_accept) {
+                        w.append("(dummy_trans ")
+                                .state(a.getId(), s.getName())
+                                .append(" dummy ").append("gs_").append(a.getId())
+                                .append(")\n");
+                    }
+                }
             }
-        }
+        });
         PDDL_problem_buffer.append(")\n");
         PDDL_problem_buffer.append("(:goal (and\n");
         PDDL_problem_buffer.append("(final_state t")
                 .append(this.trace_automaton.getAcceptStates().get(0).getName()).append(")\n");
-        for (Automaton<?> a : this.constraint_automata) {
-            if (a.getAcceptStates().size() > 1) {
-                PDDL_problem_buffer.append("(cur_state gs_").append(a.getId()).append(")\n");
-            }
-            else {
-                assert a.getAcceptStates().size() == 1;
-                PDDL_problem_buffer.append("(cur_state ")
-                        .append(String.format("s_%s_%s)\n", a.getId(), a.getAcceptStates().get(0).getName()));
+        this.writeFragment(PDDL_problem_buffer, "goal", w -> {
+            for (Automaton<?> a : this.constraint_automata) {
+                if (a.getAcceptStates().size() > 1) {
+                    w.append("(cur_state gs_").append(a.getId()).append(")\n");
+                }
+                else {
+                    assert a.getAcceptStates().size() == 1;
+                    w.append("(cur_state ")
+                            .append("s_").append(a.getId()).append("_").append(a.getAcceptStates().get(0).getName()).append(")\n");
+                }
             }
-        }
+        });
         PDDL_problem_buffer.append("))\n");
         PDDL_problem_buffer.append("(:metric minimize (total-cost))\n");
         PDDL_problem_buffer.append(")\n");
-        return PDDL_problem_buffer;
     }
 }
@@ -16,6 +16,7 @@ package trace_alignment.encodings;
 
 import trace_alignment.automaton.*;
 
+import java.io.IOException;
 import java.util.*;
 
 public class GeneralEncodingShareStates extends AbstractEncoding {
@@ -35,8 +36,7 @@ public class GeneralEncodingShareStates extends AbstractEncoding {
     }
 
     @Override
-    public StringBuilder generateDomainString() {
-        StringBuilder PDDL_domain_buffer = new StringBuilder();
+    public void writeDomain(PddlWriter PDDL_domain_buffer) throws IOException {
         PDDL_domain_buffer.append("(define (domain alignment)\n");
         PDDL_domain_buffer.append("(:requirements :typing :disjunctive-preconditions :conditional-effects :universal-preconditions :action-costs)\n");
         PDDL_domain_buffer.append("(:types trace_state automaton_state - state activity automaton)\n");
@@ -72,31 +72,33 @@ public class GeneralEncodingShareStates extends AbstractEncoding {
         PDDL_domain_buffer.append(":effect (and (increase (total-cost) 1)")
                 .append(" (not (cur_state_trace ?t1)) (cur_state_trace ?t2)\n)\n)\n");
         PDDL_domain_buffer.append(")");
-        return PDDL_domain_buffer;
     }
 
     @Override
-    public StringBuilder generateProblemString(int trace_id) {
-        StringBuilder PDDL_problem_buffer = new StringBuilder();
+    public void writeProblem(PddlWriter PDDL_problem_buffer, int trace_id) throws IOException {
         PDDL_problem_buffer.append("(define (problem p-trace-").append(trace_id).append(")\n");
         PDDL_problem_buffer.append("(:domain alignment)\n");
         PDDL_problem_buffer.append("(:objects\n");
-        for (Automaton<String> a : this.constraint_automata) {
-            PDDL_problem_buffer.append("a").append(a.getId());
-            PDDL_problem_buffer.append(" - automaton\n");
-        }
+        this.writeFragment(PDDL_problem_buffer, "automata", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                w.append("a").append(a.getId());
+                w.append(" - automaton\n");
+            }
+        });
         for (State s : this.trace_automaton.getStates()) {
             PDDL_problem_buffer.append("t").append(s.getName());
             PDDL_problem_buffer.append(" - trace_state\n");
         }
-        OptionalInt max_nb_states = this.constraint_automata.stream().mapToInt(Automaton::size).max();
-        for (int i=0; i<max_nb_states.getAsInt(); i++) {
-            PDDL_problem_buffer.append("s").append(i);
-            PDDL_problem_buffer.append(" - automaton_state\n");
-        }
-        for (String a: this.repoActivity) {
-            PDDL_problem_buffer.append(a).append(" - activity\n");
-        }
+        this.writeFragment(PDDL_problem_buffer, "objects", w -> {
+            OptionalInt max_nb_states = this.constraint_automata.stream().mapToInt(Automaton::size).max();
+            for (int i=0; i<max_nb_states.getAsInt(); i++) {
+                w.append("s").append(i);
+                w.append(" - automaton_state\n");
+            }
+            for (String a: this.repoActivity) {
+                w.id(a).append(" - activity\n");
+            }
+        });
         PDDL_problem_buffer.append(")\n");
         PDDL_problem_buffer.append("(:init\n(= (total-cost) 0)\n");
         PDDL_problem_buffer.append("(cur_state_trace t").append(this.trace_automaton.getInitState().getName()).append(")\n");
@@ -104,52 +106,55 @@ public class GeneralEncodingShareStates extends AbstractEncoding {
             PDDL_problem_buffer.append("(trace_trans t")
                     .append(trans.getInputState().getName())
                     .append(" ")
-                    .append(trans.getSymbol())
+                    .id(trans.getSymbol())
                     .append(" t")
                     .append(trans.getOutputState().getName())
                     .append(")\n");
         }
-        for (Automaton<String> a : this.constraint_automata) {
-            PDDL_problem_buffer.append("(cur_state a").append(a.getId()).append(" s").append(a.getInitState().getName())
-                    .append(")\n");
-            List<State> automaton_accept = a.getAcceptStates();
-            for (State s : automaton_accept) {
-                PDDL_problem_buffer.append("(final_state a").append(a.getId())
-                        .append(" s").append(s.getName())
-                        .append(")\n");
-            }
-            for (Transition<String> trans : a.getTransitionFunction()) {
-                PDDL_problem_buffer.append("(automaton_trans a").append(a.getId())
-                        .append(" s").append(trans.getInputState().getName())
-                        .append(" ")
-                        .append(trans.getSymbol())
-                        .append(" ")
-                        .append("s").append(trans.getOutputState().getName())
+        this.writeFragment(PDDL_problem_buffer, "init", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                w.append("(cur_state a").append(a.getId()).append(" s").append(a.getInitState().getName())
                         .append(")\n");
+                List<State> automaton_accept = a.getAcceptStates();
+                for (State s : automaton_accept) {
+                    w.append("(final_state a").append(a.getId())
+                            .append(" s").append(s.getName())
+                            .append(")\n");
+                }
+                for (Transition<String> trans : a.getTransitionFunction()) {
+                    w.append("(automaton_trans a").append(a.getId())
+                            .append(" s").append(trans.getInputState().getName())
+                            .append(" ")
+                            .id(trans.getSymbol())
+                            .append(" ")
+                            .append("s").append(trans.getOutputState().getName())
+                            .append(")\n");
+                }
             }
-        }
+        });
         PDDL_problem_buffer.append(")\n");
 //        PDDL_problem_buffer.append("(:goal (and\n(cur_state_trace t")
 //                .append(this.trace_automaton.getAcceptStates().get(0).getName()).append(")\n");
         PDDL_problem_buffer.append("(:goal (and ");
-        for (Automaton<String> a : this.constraint_automata) {
-            if (a.getAcceptStates().size() > 1) {
-                PDDL_problem_buffer.append("(or ");
-                for (State s : a.getAcceptStates()) {
-                    PDDL_problem_buffer.append(String.format("(cur_state a%s s%s) ", a.getId(), s.getName()));
+        this.writeFragment(PDDL_problem_buffer, "goal", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                if (a.getAcceptStates().size() > 1) {
+                    w.append("(or ");
+                    for (State s : a.getAcceptStates()) {
+                        w.append("(cur_state a").append(a.getId()).append(" s").append(s.getName()).append(") ");
+                    }
+                    w.append(") ");
+                } else {
+                    w.append("(cur_state a").append(a.getId()).append(" s").append(a.getAcceptStates().get(0).getName()).append(") ");
                 }
-                PDDL_problem_buffer.append(") ");
-            } else {
-                PDDL_problem_buffer.append(String.format("(cur_state a%s s%s) ", a.getId(), a.getAcceptStates().get(0).getName()));
             }
-        }
-        PDDL_problem_buffer.append(String.format("(cur_state_trace t%s)", this.trace_automaton.getAcceptStates().get(0).getName()));
+        });
+        PDDL_problem_buffer.append("(cur_state_trace t").append(this.trace_automaton.getAcceptStates().get(0).getName()).append(")");
         PDDL_problem_buffer.append("))\n");
 
 //        PDDL_problem_buffer.append("(forall (?a - automaton ?s - automaton_state) " +
 //                "(imply (cur_state ?a ?s) (final_state ?a ?s)))))\n");
         PDDL_problem_buffer.append("(:metric minimize (total-cost))\n");
         PDDL_problem_buffer.append(")\n");
-        return PDDL_problem_buffer;
     }
 }
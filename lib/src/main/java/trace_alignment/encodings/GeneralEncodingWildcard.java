@@ -0,0 +1,200 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import trace_alignment.automaton.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The General encoding where the transitions of a constraint automaton on the activities outside its alphabet are
+ * kept as a single wildcard edge (other_trans) instead of one automaton fact per activity of the log. The activities
+ * of the alphabet of the automaton are relevant in the sources of the wildcard edges, which are only taken on the
+ * other ones. Problems no longer grow with the product of the wildcard edges and the log alphabet.
+ */
+public class GeneralEncodingWildcard extends AbstractEncoding {
+    /* the symbol of the wildcard edges */
+    public static final String OTHER = "<other>";
+
+    private boolean onlyProblem;
+
+    private final HashSet<String> repoActivity;
+    private final TraceAutomaton<String> trace_automaton;
+    private final Set<Automaton<String>> constraint_automata;
+
+    /*
+     * The constraint automata must come from instantiate.
+     */
+    public GeneralEncodingWildcard(String name, HashSet<String> ra, TraceAutomaton<String> ta, Set<Automaton<String>> ca, boolean onlyProblem) {
+        super(name, ra, ta, ca, onlyProblem);
+        this.repoActivity = ra;
+        this.trace_automaton = ta;
+        this.constraint_automata = ca;
+        this.onlyProblem = onlyProblem;
+    }
+
+    /**
+     * @return the constraint automata over their own alphabets, plus the OTHER symbol for every activity outside them.
+     * They do not depend on the log, so they can be instantiated once.
+     */
+    public static Set<Automaton<String>> instantiate(Collection<AutomatonTemplate> templates) {
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(Collections.singleton(OTHER))));
+        }
+        return constraint;
+    }
+
+    @Override
+    public void writeDomain(PddlWriter PDDL_domain_buffer) throws IOException {
+        PDDL_domain_buffer.append("(define (domain alignment)\n");
+        PDDL_domain_buffer.append("(:requirements :typing :negative-preconditions :disjunctive-preconditions :conditional-effects :universal-preconditions :action-costs)\n");
+        PDDL_domain_buffer.append("(:types trace_state automaton_state - state activity)\n");
+        PDDL_domain_buffer.append("(:predicates\n");
+        PDDL_domain_buffer.append("(trace ?t1 - trace_state ?e - activity ?t2 - trace_state)\n");
+        PDDL_domain_buffer.append("(cur_state ?s - state)\n");
+        PDDL_domain_buffer.append("(automaton ?s1 - automaton_state ?e - activity ?s2 - automaton_state)\n");
+        PDDL_domain_buffer.append("(other_trans ?s1 - automaton_state ?s2 - automaton_state)\n");
+        PDDL_domain_buffer.append("(relevant ?s - automaton_state ?e - activity)\n");
+        PDDL_domain_buffer.append("(final_state ?s - state)\n)\n");
+        PDDL_domain_buffer.append("(:functions\n");
+        PDDL_domain_buffer.append("(total-cost)\n");
+        PDDL_domain_buffer.append(")\n\n");
+        /* Sync Operator */
+        PDDL_domain_buffer.append("(:action sync\n");
+        PDDL_domain_buffer.append(":parameters (?t1 - trace_state ?e - activity ?t2 - trace_state)\n");
+        PDDL_domain_buffer.append(":precondition (and (cur_state ?t1) (trace ?t1 ?e ?t2))\n");
+        PDDL_domain_buffer.append(":effect (and (not (cur_state ?t1)) (cur_state ?t2)\n" +
+                "\t\t(forall (?s1 ?s2 - automaton_state)\n" +
+                "\t\t\t(when (and (cur_state ?s1) (automaton ?s1 ?e ?s2))\n" +
+                "\t\t\t\t(and (not (cur_state ?s1)) (cur_state ?s2))))\n" +
+                "\t\t(forall (?s1 ?s2 - automaton_state)\n" +
+                "\t\t\t(when (and (cur_state ?s1) (other_trans ?s1 ?s2) (not (relevant ?s1 ?e)))\n" +
+                "\t\t\t\t(and (not (cur_state ?s1)) (cur_state ?s2)))\n)\n)\n)\n");
+        /* Add Operator */
+        PDDL_domain_buffer.append("(:action add\n");
+        PDDL_domain_buffer.append(":parameters (?e - activity)\n");
+        PDDL_domain_buffer.append(":precondition (and)\n");
+        PDDL_domain_buffer.append(":effect (and (increase (total-cost) 1)\n" +
+                "\t\t(forall (?s1 ?s2 - automaton_state)\n" +
+                "\t\t\t(when (and (cur_state ?s1) (automaton ?s1 ?e ?s2))\n" +
+                "\t\t\t\t(and (not (cur_state ?s1)) (cur_state ?s2))))\n" +
+                "\t\t(forall (?s1 ?s2 - automaton_state)\n" +
+                "\t\t\t(when (and (cur_state ?s1) (other_trans ?s1 ?s2) (not (relevant ?s1 ?e)))\n" +
+                "\t\t\t\t(and (not (cur_state ?s1)) (cur_state ?s2)))\n)\n)\n)\n");
+        /* Del Operator */
+        PDDL_domain_buffer.append("(:action del\n");
+        PDDL_domain_buffer.append(":parameters (?t1 - trace_state ?e - activity ?t2 - trace_state)\n");
+        PDDL_domain_buffer.append(":precondition (and (cur_state ?t1) (trace ?t1 ?e ?t2))\n");
+        PDDL_domain_buffer.append(":effect (and (increase (total-cost) 1) (not (cur_state ?t1)) (cur_state ?t2)\n)" +
+                "\n)\n");
+        PDDL_domain_buffer.append(")");
+    }
+
+    @Override
+    public void writeProblem(PddlWriter PDDL_problem_buffer, int trace_id) throws IOException {
+        PDDL_problem_buffer.append("(define (problem p-trace-").append(trace_id).append(")\n");
+        PDDL_problem_buffer.append("(:domain alignment)\n");
+        PDDL_problem_buffer.append("(:objects\n");
+        for (State s : this.trace_automaton.getStates()) {
+            PDDL_problem_buffer.append("t").append(s.getName());
+            PDDL_problem_buffer.append(" - trace_state\n");
+        }
+        this.writeFragment(PDDL_problem_buffer, "objects", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                for (State s : a.getStates()) {
+                    w.state(a.getId(), s.getName());
+                    w.append(" - automaton_state\n");
+                }
+            }
+            // the activities of the constraints may not occur in the log
+            Set<String> activities = new LinkedHashSet<>(this.repoActivity);
+            this.constraint_automata.forEach(a -> activities.addAll(a.getAlphabet()));
+            activities.remove(OTHER);
+            for (String a : activities) {
+                w.id(a).append(" - activity\n");
+            }
+        });
+        PDDL_problem_buffer.append(")\n");
+        PDDL_problem_buffer.append("(:init\n(= (total-cost) 0)\n");
+        PDDL_problem_buffer.append("(cur_state t").append(this.trace_automaton.getInitState().getName()).append(")\n");
+        PDDL_problem_buffer.append("(final_state t").append(this.trace_automaton.getAcceptStates().get(0).getName()).append(")\n");
+        for (Transition<String> trans : this.trace_automaton.getTransitionFunction()) {
+            PDDL_problem_buffer.append("(trace t")
+                    .append(trans.getInputState().getName())
+                    .append(" ")
+                    .id(trans.getSymbol())
+                    .append(" t")
+                    .append(trans.getOutputState().getName())
+                    .append(")\n");
+        }
+        this.writeFragment(PDDL_problem_buffer, "init", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                w.append("(cur_state ")
+                        .state(a.getId(), a.getInitState().getName()).append(")\n");
+                for (State s : a.getAcceptStates()) {
+                    w.append("(final_state ")
+                            .state(a.getId(), s.getName()).append(")\n");
+                }
+                Set<State> sources = new LinkedHashSet<>();
+                for (Transition<String> trans : a.getTransitionFunction()) {
+                    if (trans.getSymbol().equals(OTHER)) {
+                        sources.add(trans.getInputState());
+                        w.append("(other_trans ")
+                                .state(a.getId(), trans.getInputState().getName())
+                                .append(" ")
+                                .state(a.getId(), trans.getOutputState().getName())
+                                .append(")\n");
+                    } else {
+                        w.append("(automaton ")
+                                .state(a.getId(), trans.getInputState().getName())
+                                .append(" ")
+                                .id(trans.getSymbol())
+                                .append(" ")
+                                .state(a.getId(), trans.getOutputState().getName())
+                                .append(")\n");
+                    }
+                }
+                for (State s : sources) {
+                    for (String act : a.getAlphabet()) {
+                        if (!act.equals(OTHER)) {
+                            w.append("(relevant ").state(a.getId(), s.getName()).append(" ").id(act).append(")\n");
+                        }
+                    }
+                }
+            }
+        });
+        PDDL_problem_buffer.append(")\n");
+        PDDL_problem_buffer.append("(:goal (and ");
+        this.writeFragment(PDDL_problem_buffer, "goal", w -> {
+            for (Automaton<String> a : this.constraint_automata) {
+                if (a.getAcceptStates().size() > 1) {
+                    w.append("(or ");
+                    for (State s : a.getAcceptStates()) {
+                        w.append("(cur_state ").state(a.getId(), s.getName()).append(") ");
+                    }
+                    w.append(") ");
+                } else {
+                    w.append("(cur_state s_").append(a.getId()).append("_").append(a.getAcceptStates().get(0).getName()).append(") ");
+                }
+            }
+        });
+        PDDL_problem_buffer.append("(cur_state t").append(this.trace_automaton.getAcceptStates().get(0).getName()).append(")");
+        PDDL_problem_buffer.append("))\n");
+        PDDL_problem_buffer.append("(:metric minimize (total-cost))\n");
+        PDDL_problem_buffer.append(")\n");
+    }
+}
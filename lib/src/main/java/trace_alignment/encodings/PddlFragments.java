@@ -0,0 +1,85 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import trace_alignment.automaton.Automaton;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sections of PDDL files rendered once and then copied as bytes. The sections of the problems that only depend on the
+ * constraint automata and the activities (their objects, initial facts and goals) are the same for every trace once
+ * the automata are instantiated over a global alphabet: the first problem renders them, the next ones splice them.
+ * <p>
+ * Thread-safe.
+ */
+public class PddlFragments {
+    private final Set<Automaton<String>> constraintAutomata;
+    private final Set<String> activities;
+    private final Map<String, byte[]> fragments = new ConcurrentHashMap<>();
+
+    public interface Fragment {
+        void write(PddlWriter w) throws IOException;
+    }
+
+    public PddlFragments(Set<Automaton<String>> constraintAutomata, Set<String> activities) {
+        this.constraintAutomata = constraintAutomata;
+        this.activities = activities;
+    }
+
+    /**
+     * @return whether the fragments can be spliced into the problems of these automata and activities, i.e. they
+     * are the very same sets.
+     */
+    public boolean covers(Set<Automaton<String>> constraintAutomata, Set<String> activities) {
+        return this.constraintAutomata == constraintAutomata && this.activities == activities;
+    }
+
+    /**
+     * Write the section, rendering it first if it was never written.
+     */
+    public void write(PddlWriter w, String section, Fragment fragment) throws IOException {
+        byte[] bytes = this.fragments.get(section);
+        if (bytes == null) {
+            bytes = render(new PddlWriter(ByteBuffer.allocate(8192)), fragment);
+            this.fragments.putIfAbsent(section, bytes);
+        }
+        w.append(bytes);
+    }
+
+    public int size() {
+        return this.fragments.size();
+    }
+
+    /**
+     * Render a fragment through writer, which is re-opened in memory.
+     */
+    public static byte[] render(PddlWriter writer, Fragment fragment) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PddlWriter w = writer.open(Channels.newChannel(out))) {
+            fragment.write(w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
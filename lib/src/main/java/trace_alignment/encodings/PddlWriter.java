@@ -0,0 +1,174 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams PDDL text into a channel through a reusable (direct) buffer. PDDL identifiers are ASCII, so strings are
+ * copied char by char into the buffer without intermediate encoding; activity names, which are written over and
+ * over, are encoded once and cached.
+ * <p>
+ * A writer is not thread-safe, but it can be re-opened on another file once closed, keeping its buffer.
+ */
+public class PddlWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_IDENTIFIERS = 1 << 14;
+
+    private final ByteBuffer buffer;
+    private final Map<String, byte[]> identifiers = new HashMap<>();
+    private final byte[] digits = new byte[11];
+    private WritableByteChannel channel;
+
+    public PddlWriter() {
+        this(ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+
+    public PddlWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public PddlWriter open(File file) throws IOException {
+        return this.open(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public PddlWriter open(WritableByteChannel channel) throws IOException {
+        if (this.channel != null) {
+            this.close();
+        }
+        this.channel = channel;
+        this.buffer.clear();
+        return this;
+    }
+
+    public PddlWriter append(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return this.append(s.substring(i).getBytes(StandardCharsets.UTF_8));
+            }
+            if (!this.buffer.hasRemaining()) {
+                this.drain();
+            }
+            this.buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    public PddlWriter append(char c) throws IOException {
+        return c < 0x80 ? this.append((byte) c) : this.append(String.valueOf(c));
+    }
+
+    public PddlWriter append(int n) throws IOException {
+        if (n < 0) {
+            if (n == Integer.MIN_VALUE) {
+                return this.append(Integer.toString(n));
+            }
+            this.append((byte) '-');
+            n = -n;
+        }
+        int pos = this.digits.length;
+        do {
+            this.digits[--pos] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n > 0);
+        for (; pos < this.digits.length; pos++) {
+            this.append(this.digits[pos]);
+        }
+        return this;
+    }
+
+    /**
+     * Append an identifier that is written many times, e.g. an activity name.
+     */
+    public PddlWriter id(String identifier) throws IOException {
+        byte[] bytes = this.identifiers.get(identifier);
+        if (bytes == null) {
+            if (this.identifiers.size() >= MAX_IDENTIFIERS) {
+                this.identifiers.clear();
+            }
+            bytes = identifier.getBytes(StandardCharsets.UTF_8);
+            this.identifiers.put(identifier, bytes);
+        }
+        return this.append(bytes);
+    }
+
+    /**
+     * Append the constant s_AUTOMATON_STATE of an automaton state.
+     */
+    public PddlWriter state(String automatonId, String stateName) throws IOException {
+        return this.append("s_").append(automatonId).append('_').append(stateName);
+    }
+
+    private PddlWriter append(byte b) throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            this.drain();
+        }
+        this.buffer.put(b);
+        return this;
+    }
+
+    /**
+     * Append text encoded beforehand, e.g. a fragment shared by many files.
+     */
+    public PddlWriter append(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!this.buffer.hasRemaining()) {
+                this.drain();
+            }
+            int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        return this;
+    }
+
+    private void drain() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    public void flush() throws IOException {
+        if (this.channel != null) {
+            this.drain();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            try {
+                this.drain();
+            } finally {
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compiled problems appended one after the other to a few large segment files, problems-0.dat, problems-1.dat, ...
+ * instead of one file per problem. The index problems.idx has one line "NAME SEGMENT OFFSET LENGTH" per problem, in
+ * the order the problems were added.
+ * <p>
+ * A segment never exceeds the segment size (unless it holds a single larger problem), so that every segment can be
+ * memory-mapped at once by the {@link Reader}.
+ */
+public class ProblemArchive implements Closeable {
+    public static final String INDEX = "problems.idx";
+    public static final long SEGMENT_SIZE = 1L << 30;
+
+    private final File directory;
+    private final long segmentSize;
+    private final BufferedWriter index;
+    /* held by the thread streaming a problem into the current segment */
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel segment;
+    private int segmentNb = -1;
+    private long position;
+    private int size = 0;
+
+    public ProblemArchive(File directory) throws IOException {
+        this(directory, SEGMENT_SIZE);
+    }
+
+    public ProblemArchive(File directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+        this.index = Files.newBufferedWriter(new File(directory, INDEX).toPath(), StandardCharsets.UTF_8);
+    }
+
+    public static boolean exists(File directory) {
+        return new File(directory, INDEX).isFile();
+    }
+
+    private static File segmentFile(File directory, int segment) {
+        return new File(directory, String.format("problems-%d.dat", segment));
+    }
+
+    /**
+     * Append a problem. Names must not contain whitespace.
+     */
+    public void add(String name, byte[] content) throws IOException {
+        try (WritableByteChannel entry = this.open(name)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                entry.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Start a problem, streamed straight into the current segment through the returned channel, and ended by closing
+     * the channel. The archive is only locked from the first write to the close, so that the problems of several
+     * threads can be rendered into their own buffers concurrently. A thread streams one problem at a time.
+     */
+    public WritableByteChannel open(String name) {
+        return new Entry(name);
+    }
+
+    private void _nextSegment() throws IOException {
+        if (this.segment != null) {
+            this.segment.close();
+        }
+        this.segmentNb++;
+        this.segment = FileChannel.open(segmentFile(this.directory, this.segmentNb).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.position = 0;
+    }
+
+    public int size() {
+        this.lock.lock();
+        try {
+            return size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            this.index.close();
+        } finally {
+            try {
+                if (this.segment != null) {
+                    this.segment.close();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private class Entry implements WritableByteChannel {
+        private final String name;
+        private long start = -1;
+        private long length = 0;
+        private boolean open = true;
+
+        private Entry(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+            if (this.start < 0) {
+                lock.lock();
+                if (segment == null || (position > 0 && position + src.remaining() > segmentSize)) {
+                    _nextSegment();
+                }
+                this.start = position;
+            } else if (this.start > 0 && this.start + this.length + src.remaining() > segmentSize) {
+                this._move();
+            }
+            int n = 0;
+            while (src.hasRemaining()) {
+                n += segment.write(src);
+            }
+            this.length += n;
+            return n;
+        }
+
+        /*
+         * The problem outgrows its segment: what is already written is moved to the start of a new one.
+         */
+        private void _move() throws IOException {
+            try (FileChannel previous = FileChannel.open(segmentFile(directory, segmentNb).toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                _nextSegment();
+                long moved = 0;
+                while (moved < this.length) {
+                    moved += previous.transferTo(this.start + moved, this.length - moved, segment);
+                }
+                previous.truncate(this.start);
+            }
+            this.start = 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.open) {
+                return;
+            }
+            this.open = false;
+            if (!lock.isHeldByCurrentThread()) {
+                lock.lock();
+            }
+            try {
+                if (this.start < 0) {
+                    if (segment == null) {
+                        _nextSegment();
+                    }
+                    this.start = position;
+                }
+                index.write(String.format("%s %d %d %d\n", this.name, segmentNb, this.start, this.length));
+                position = this.start + this.length;
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Read-only view of an archive, with every segment memory-mapped. Problems are served as slices of the mappings,
+     * without copies.
+     */
+    public static class Reader {
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private final Map<String, long[]> entries = new LinkedHashMap<>();
+
+        public Reader(File directory) throws IOException {
+            for (String line : Files.readAllLines(new File(directory, INDEX).toPath(), StandardCharsets.UTF_8)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(" ");
+                if (fields.length != 4) {
+                    throw new IOException(String.format("Malformed index line: %s", line));
+                }
+                this.entries.put(fields[0], new long[]{Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3])});
+            }
+            for (int s = 0; segmentFile(directory, s).isFile(); s++) {
+                try (FileChannel channel = FileChannel.open(segmentFile(directory, s).toPath(),
+                        StandardOpenOption.READ)) {
+                    // the mapping stays valid once the channel is closed
+                    this.segments.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+        }
+
+        public Set<String> getNames() {
+            return Collections.unmodifiableSet(this.entries.keySet());
+        }
+
+        public boolean contains(String name) {
+            return this.entries.containsKey(name);
+        }
+
+        /**
+         * @return a read-only buffer over the content of the problem, or null if it is not in the archive.
+         */
+        public ByteBuffer get(String name) throws IOException {
+            long[] entry = this.entries.get(name);
+            if (entry == null) {
+                return null;
+            }
+            if (entry[0] >= this.segments.size() || entry[1] + entry[2] > this.segments.get((int) entry[0]).capacity()) {
+                throw new IOException(String.format("Truncated archive, cannot read %s", name));
+            }
+            ByteBuffer buffer = this.segments.get((int) entry[0]).asReadOnlyBuffer();
+            buffer.position((int) entry[1]);
+            buffer.limit((int) (entry[1] + entry[2]));
+            return buffer.slice();
+        }
+
+        public String getString(String name) throws IOException {
+            ByteBuffer buffer = this.get(name);
+            return buffer == null ? null : StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+
+        /**
+         * Write a problem of the archive to its own file.
+         */
+        public void extract(String name, File target) throws IOException {
+            ByteBuffer buffer = this.get(name);
+            if (buffer == null) {
+                throw new FileNotFoundException(String.format("%s is not in the archive", name));
+            }
+            try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.State;
+import trace_alignment.automaton.Transition;
+import trace_alignment.utils.CombinationOfStates;
+import trace_alignment.utils.CombinationOfTransitions;
+import trace_alignment.utils.Combinations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * The part of a STRIPS domain that only depends on the constraint automata: the constants of their states, the
+ * combinations of transitions with their add actions and the goto-goal actions, serialized once. With a global
+ * alphabet the automata are the same for every trace, so one core is spliced into every domain.
+ * <p>
+ * Thread-safe once built.
+ */
+public class StripsDomainCore {
+    private final Map<String, List<Transition<String>>> transitionsByLabel = new HashMap<>();
+    private final byte[] constants;
+    private final List<Combination> combinations = new ArrayList<>();
+    private final List<byte[][]> gotoGoals = new ArrayList<>();
+    private final Map<String, byte[]> notInSources = new ConcurrentHashMap<>();
+
+    /*
+     * A combination of transitions, as the literals of its precondition and effect.
+     */
+    private static class Combination {
+        private final String label;
+        private final byte[] pre;
+        private final byte[] eff;
+
+        private Combination(String label, byte[] pre, byte[] eff) {
+            this.label = label;
+            this.pre = pre;
+            this.eff = eff;
+        }
+    }
+
+    public StripsDomainCore(Set<Automaton<String>> constraint_automata, List<CombinationOfStates> combStates) {
+        // transitions + deadEnd transitions, by label
+        for (Automaton<String> a : constraint_automata) {
+            for (Transition<String> t : a.getAllTransitions()) {
+                this.transitionsByLabel.computeIfAbsent(t.getSymbol(), l -> new ArrayList<>()).add(t);
+            }
+        }
+        PddlWriter writer = new PddlWriter(ByteBuffer.allocate(8192));
+        this.constants = PddlFragments.render(writer, w -> {
+            for (Automaton<String> a : constraint_automata) {
+                for (State s : a.getStates()) {
+                    if (!Objects.equals(s.getName(), "ink")) {
+                        w.state(a.getId(), s.getName()).append(" - state\n");
+                    }
+                }
+                if (a.getAcceptStates().size() > 1) {
+                    w.append("s_").append(a.getId()).append("_goal - state\n");
+                }
+            }
+        });
+        Set<String> all_symbols = new HashSet<>();
+        constraint_automata.forEach(a -> all_symbols.addAll(a.getAlphabet()));
+        Map<String, List<Transition<String>>> relevantTransitionsByLabel = new HashMap<>();
+        for (String l : all_symbols) {
+            relevantTransitionsByLabel.put(l, this.transitionsByLabel.getOrDefault(l, new ArrayList<>()));
+        }
+        for (Map.Entry<String, List<Transition<String>>> entry : relevantTransitionsByLabel.entrySet()) {
+            int nbAutomata = entry.getValue().stream().map(Transition::getAutomatonId).collect(Collectors.toSet()).size();
+            for (int k = 1; k <= nbAutomata; k++) {
+                Iterator<CombinationOfTransitions> it = Combinations.transitions(entry.getKey(), entry.getValue(), k);
+                while (it.hasNext()) {
+                    CombinationOfTransitions ct = it.next();
+                    this.combinations.add(new Combination(ct.getLabel(), PddlFragments.render(writer, ct::writePre),
+                            PddlFragments.render(writer, ct::writeEff)));
+                }
+            }
+        }
+        for (CombinationOfStates cs : combStates) {
+            this.gotoGoals.add(new byte[][]{PddlFragments.render(writer, cs::writePre), PddlFragments.render(writer, cs::writeEff)});
+        }
+    }
+
+    public void writeConstants(PddlWriter w) throws IOException {
+        w.append(this.constants);
+    }
+
+    /**
+     * Write the add action of every combination, each one followed by its sync actions with the trace transitions of
+     * the same label.
+     */
+    public void writeCombinations(PddlWriter w, Map<String, List<Transition<String>>> traceTransitionsByLabel)
+            throws IOException {
+        int i = 0;
+        for (Combination c : this.combinations) {
+            w.append("(:action add-").id(c.label).append("-c").append(i).append("\n");
+            w.append(":parameters ()\n");
+            w.append(":precondition (and ").append(c.pre).append(")\n");
+            w.append(":effect (and (increase (total-cost) 1) ").append(c.eff).append(")\n)\n\n");
+            for (Transition<String> tr : traceTransitionsByLabel.getOrDefault(c.label, Collections.emptyList())) {
+                w.append("(:action sync-").id(c.label).append("-c").append(i).append("\n");
+                w.append(":parameters ()\n");
+                w.append(":precondition (and ").append(c.pre);
+                w.append("(cur_state t").append(tr.getInputState().getName()).append("))\n");
+                w.append(":effect (and ").append(c.eff);
+                w.append("(not (cur_state t").append(tr.getInputState().getName()).append(")) (cur_state t")
+                        .append(tr.getOutputState().getName()).append("))\n)\n\n");
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Write that no constraint automaton is in the source of a transition labelled by label.
+     */
+    public void writeNotInSources(PddlWriter w, String label) throws IOException {
+        byte[] literals = this.notInSources.get(label);
+        if (literals == null) {
+            HashSet<Transition<String>> ss = new HashSet<>(this.transitionsByLabel.getOrDefault(label, Collections.emptyList()));
+            literals = PddlFragments.render(new PddlWriter(ByteBuffer.allocate(1024)), n -> {
+                for (Transition<String> ts : ss) {
+                    n.append("(not (cur_state ").state(ts.getInputState().getAutomatonId(), ts.getInputState().getName()).append(")) ");
+                }
+            });
+            this.notInSources.put(label, literals);
+        }
+        w.append(literals);
+    }
+
+    /**
+     * Write a goto-goal action for every combination of accepting states, once the trace is in its accepting state.
+     */
+    public void writeGotoGoals(PddlWriter w, String traceAcceptState) throws IOException {
+        int i = 0;
+        for (byte[][] cs : this.gotoGoals) {
+            w.append("(:action gotoGoal-c").append(i).append("\n");
+            w.append(":parameters ()\n");
+            w.append(":precondition (and ");
+            w.append("(cur_state t").append(traceAcceptState).append(") ").append(cs[0]);
+            w.append(")\n:effect ").append(cs[1]).append("\n)\n\n");
+            i++;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.parsing;
+
+import java.util.*;
+
+/**
+ * Log-wide normalizer of activities. Each distinct (name, lifecycle transition) pair of the log is normalized only
+ * once with {@link ParseLog#normalizeActivity(String, String)}; afterwards every event of that pair gets the same
+ * String instance.
+ */
+public class ActivityNormalizer {
+    private final Map<String, Map<String, String>> normalized = new HashMap<>();
+    private final Map<String, String> activities = new HashMap<>();
+
+    /**
+     * @param activityName the concept:name of the event.
+     * @param eventType the lifecycle:transition of the event, null if missing.
+     * @return the normalized activity, always the same instance for equal activities.
+     */
+    public synchronized String activity(String activityName, String eventType) {
+        Map<String, String> byType = this.normalized.computeIfAbsent(activityName, n -> new HashMap<>());
+        String activity = byType.get(eventType);
+        if (activity == null) {
+            activity = this.intern(ParseLog.normalizeActivity(activityName, eventType));
+            byType.put(eventType, activity);
+        }
+        return activity;
+    }
+
+    /**
+     * @return the instance of the activity held by the normalizer, which is added if missing.
+     */
+    public synchronized String intern(String activity) {
+        return this.activities.computeIfAbsent(activity, a -> a);
+    }
+
+    public synchronized int size() {
+        return this.activities.size();
+    }
+}
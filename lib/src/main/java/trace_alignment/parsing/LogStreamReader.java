@@ -0,0 +1,206 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.parsing;
+
+import trace_alignment.utils.Trace;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for XES and MXML logs (optionally gzipped). Traces are read one at a time and only the trace name
+ * and the normalized activity of each event are kept, so the whole log is never materialized.
+ */
+public class LogStreamReader implements Iterator<Trace>, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final XMLStreamReader reader;
+    private final boolean mxml;
+    private final ActivityNormalizer normalizer;
+    private Trace next;
+
+    public LogStreamReader(String inputLogFileName) throws IOException {
+        this(inputLogFileName, new ActivityNormalizer());
+    }
+
+    /**
+     * @param normalizer the normalizer of the activities, possibly shared with other readers of the log.
+     */
+    public LogStreamReader(String inputLogFileName, ActivityNormalizer normalizer) throws IOException {
+        this.normalizer = normalizer;
+        String name = inputLogFileName.toLowerCase();
+        this.mxml = name.endsWith("mxml.gz") || name.endsWith("mxml");
+        InputStream is = new BufferedInputStream(new FileInputStream(inputLogFileName), BUFFER_SIZE);
+        if (name.endsWith(".gz")) {
+            is = new GZIPInputStream(is, BUFFER_SIZE);
+        }
+        this.in = is;
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            this.reader = factory.createXMLStreamReader(this.in);
+        } catch (XMLStreamException e) {
+            this.in.close();
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            try {
+                this.next = this.mxml ? this.readMxmlTrace() : this.readXesTrace();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("Malformed log: " + e.getMessage(), e);
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Trace next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Trace t = this.next;
+        this.next = null;
+        return t;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            this.in.close();
+        }
+    }
+
+    private boolean skipTo(String element) throws XMLStreamException {
+        while (this.reader.hasNext()) {
+            if (this.reader.next() == XMLStreamConstants.START_ELEMENT && this.reader.getLocalName().equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Only attributes that are direct children of <trace> or <event> are considered; nested attributes are skipped.
+     */
+    private Trace readXesTrace() throws XMLStreamException {
+        if (!this.skipTo("trace")) {
+            return null;
+        }
+        String traceName = null;
+        List<String> activities = new ArrayList<>();
+        String eventName = null;
+        String eventType = null;
+        boolean inEvent = false;
+        int depth = 0;
+        while (this.reader.hasNext()) {
+            int event = this.reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 1 && this.reader.getLocalName().equals("event")) {
+                    inEvent = true;
+                    eventName = null;
+                    eventType = null;
+                } else if (depth == 1) {
+                    if ("concept:name".equals(this.reader.getAttributeValue(null, "key"))) {
+                        traceName = this.reader.getAttributeValue(null, "value");
+                    }
+                } else if (depth == 2 && inEvent) {
+                    String key = this.reader.getAttributeValue(null, "key");
+                    if ("concept:name".equals(key)) {
+                        eventName = this.reader.getAttributeValue(null, "value");
+                    } else if ("lifecycle:transition".equals(key)) {
+                        eventType = this.reader.getAttributeValue(null, "value");
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                if (depth == 1 && inEvent) {
+                    activities.add(this.normalizer.activity(eventName, eventType));
+                    inEvent = false;
+                }
+                depth--;
+            }
+        }
+        Trace t = new Trace(traceName);
+        t.setTrace_alphabet(activities);
+        return t;
+    }
+
+    private Trace readMxmlTrace() throws XMLStreamException {
+        if (!this.skipTo("ProcessInstance")) {
+            return null;
+        }
+        String traceName = this.reader.getAttributeValue(null, "id");
+        List<String> activities = new ArrayList<>();
+        String eventName = null;
+        String eventType = null;
+        boolean inEvent = false;
+        int depth = 0;
+        while (this.reader.hasNext()) {
+            int event = this.reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String element = this.reader.getLocalName();
+                if (depth == 1 && element.equals("AuditTrailEntry")) {
+                    inEvent = true;
+                    eventName = null;
+                    eventType = null;
+                } else if (depth == 2 && inEvent && element.equals("WorkflowModelElement")) {
+                    eventName = this.reader.getElementText().trim();
+                    depth--;
+                } else if (depth == 2 && inEvent && element.equals("EventType")) {
+                    String unknownType = this.reader.getAttributeValue(null, "unknowntype");
+                    eventType = this.reader.getElementText().trim();
+                    if (eventType.equals("unknown") && unknownType != null) {
+                        eventType = unknownType;
+                    }
+                    depth--;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                if (depth == 1 && inEvent) {
+                    activities.add(this.normalizer.activity(eventName, eventType));
+                    inEvent = false;
+                }
+                depth--;
+            }
+        }
+        Trace t = new Trace(traceName);
+        t.setTrace_alphabet(activities);
+        return t;
+    }
+}
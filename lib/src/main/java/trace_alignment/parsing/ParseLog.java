@@ -63,5 +63,17 @@ public class ParseLog {
 		
 		return log;
 	}
+
+	/**
+	 * @param activityName the concept:name of the event.
+	 * @param eventType the lifecycle:transition of the event, "complete" if missing.
+	 * @return the activity as a PDDL-friendly identifier.
+	 */
+	public static String normalizeActivity(String activityName, String eventType) {
+		String name = activityName.toLowerCase();
+		name = name.replaceAll("( |\\/|\\(|\\)|\\<|\\>|\\.)", "").replaceAll("(\\,|\\+|\\-)", "_");
+		String type = eventType == null ? "complete" : eventType.toLowerCase();
+		return String.format("%s_%s", name, type);
+	}
 	
 }
@@ -16,67 +16,160 @@ package trace_alignment.parsing;
 
 import trace_alignment.automaton.AutomatonTemplate;
 import trace_alignment.utils.Guard;
-import trace_alignment.utils.Match;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class ParseLydiaDFA {
+    private static final String FREE_VARIABLES = "DFA for formula with free variables:";
+    private static final String INITIAL_STATE = "Initial state:";
+    private static final String ACCEPTING_STATES = "Accepting states:";
+    private static final String REJECTING_STATES = "Rejecting states:";
 
     public static AutomatonTemplate parseMONAprint(String inputDot) {
-        List<String> alphabet = new ArrayList<>();
-        Set<String> transitions = new HashSet<>();
-        Set<Integer> accepting_states = new HashSet<>();
-        Set<Integer> rejecting_states = new HashSet<>();
-
-        String result;
+        try {
+            return parseMONAprint(new BufferedReader(new StringReader(inputDot)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        result = Match.matchOne(inputDot, ".*DFA for formula with free variables:[\\s]*(.*?)[\\s]*\\n.*");
-        Collections.addAll(alphabet, result.split(" "));
+    public static AutomatonTemplate parseMONAprint(InputStream in) throws IOException {
+        return parseMONAprint(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
 
-        int init_state = Integer.parseInt(Objects.requireNonNull(Match.matchOne(inputDot, ".*Initial state:[\\s]*(.*?)\\n.*")));
+    /**
+     * Parse the MONA print of a DFA, as output by Lydia, in a single pass over its lines and without regular
+     * expressions, so that DFAs with many transitions are parsed in linear time. The reader is consumed up to its end.
+     */
+    public static AutomatonTemplate parseMONAprint(BufferedReader reader) throws IOException {
+        List<String> alphabet = null;
+        Set<String> transitions = new HashSet<>();
+        Set<Integer> accepting_states = null;
+        Set<Integer> rejecting_states = null;
+        Integer init_state = null;
+        String firstLine = null;
 
-        result = Match.matchOne(inputDot, ".*Accepting states:[\\s]*(.*?)\\n.*");
-        for (String item : result.split(" ")) {
-            accepting_states.add(Integer.parseInt(item));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (firstLine == null) {
+                firstLine = line;
+            }
+            int idx;
+            if (alphabet == null && (idx = line.indexOf(FREE_VARIABLES)) >= 0) {
+                alphabet = new ArrayList<>(_tokens(line.substring(idx + FREE_VARIABLES.length())));
+            } else if (init_state == null && (idx = line.indexOf(INITIAL_STATE)) >= 0) {
+                init_state = Integer.parseInt(line.substring(idx + INITIAL_STATE.length()).trim());
+            } else if (accepting_states == null && (idx = line.indexOf(ACCEPTING_STATES)) >= 0) {
+                accepting_states = _states(line.substring(idx + ACCEPTING_STATES.length()));
+            } else if (rejecting_states == null && (idx = line.indexOf(REJECTING_STATES)) >= 0) {
+                rejecting_states = _states(line.substring(idx + REJECTING_STATES.length()));
+            } else {
+                _transition(line, transitions);
+            }
         }
-        result = Match.matchOne(inputDot, ".*Rejecting states:[\\s]*(.*?)\\n.*");
-        for (String item : result.split(" ")) {
-            rejecting_states.add(Integer.parseInt(item));
+        if (alphabet == null || init_state == null || accepting_states == null || rejecting_states == null) {
+            throw new IOException(String.format("Not the print of a DFA: %s", firstLine));
         }
 
-        List<String> lines = Match.matchAll(inputDot, ".*(State[\\s]*\\d+:[\\s]*[\\d|X]+[\\s]*->[\\s]*state[\\s]*\\d+).*");
-        for (String line : lines) {
-            String _source_str = Match.matchOne(line, ".*State[\\s]*(\\d+):\\s.*");
-            String _dest_str = Match.matchOne(line, ".*state[\\s]*(\\d+)[\\s]*.*");
-            // no loops
-            if (_source_str.equals(_dest_str))
-                continue;
-            String guard = Match.matchOne(line, ".*:[\\s](.*?)[\\s]->.*");
-            String[] split_guard = guard.replaceAll("X", " ").replace("", " ").trim().split(" ");
-            long sum = 0;
-            if (!split_guard[0].equals("")) {
-                sum = Arrays.stream(split_guard).mapToInt(Integer::parseInt).sum();
+        Set<Integer> all_states = new HashSet<>(accepting_states);
+        all_states.addAll(rejecting_states);
+        return new AutomatonTemplate(alphabet, transitions, all_states, init_state, accepting_states);
+    }
+
+    private static List<String> _tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean space = i == text.length() || Character.isWhitespace(text.charAt(i));
+            if (space && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            } else if (!space && start < 0) {
+                start = i;
             }
-            if (sum <= 1) {
-                if (guard.contains("X")) {
-                    // if the guard, without X, is > 1, we ignore it.
-                    // if the guard, without X, is = 1, replaceAll(X, 0)
-                    // if the guard, without X, is = 0, we compute only the combinantions with 0 <= sum <= 1
-                    Guard g = new Guard(guard);
-                    HashSet<String> explicit_labels = g.getFlat();
-                    for (String l : explicit_labels) {
-                        transitions.add(String.format("%s,%s,%s", _source_str, l, _dest_str));
-                    }
-                }
-                else {
-                    transitions.add(String.format("%s,%s,%s", _source_str, guard, _dest_str));
+        }
+        return tokens;
+    }
+
+    private static Set<Integer> _states(String text) {
+        Set<Integer> states = new HashSet<>();
+        for (String token : _tokens(text)) {
+            states.add(Integer.parseInt(token));
+        }
+        return states;
+    }
+
+    /*
+     * A transition line reads "State SRC: GUARD -> state DST", where the guard has one 0, 1 or X (don't care) per
+     * variable of the alphabet. Lines that are not transitions are ignored.
+     */
+    private static void _transition(String line, Set<String> transitions) {
+        int i = line.indexOf("State");
+        if (i < 0) {
+            return;
+        }
+        i = _skipSpaces(line, i + "State".length());
+        int srcEnd = _skipDigits(line, i);
+        if (srcEnd == i || srcEnd >= line.length() || line.charAt(srcEnd) != ':') {
+            return;
+        }
+        String _source_str = line.substring(i, srcEnd);
+        int guardStart = _skipSpaces(line, srcEnd + 1);
+        int guardEnd = guardStart;
+        int sum = 0;
+        boolean dontCare = false;
+        while (guardEnd < line.length() && "01X".indexOf(line.charAt(guardEnd)) >= 0) {
+            sum += line.charAt(guardEnd) == '1' ? 1 : 0;
+            dontCare |= line.charAt(guardEnd) == 'X';
+            guardEnd++;
+        }
+        i = _skipSpaces(line, guardEnd);
+        if (guardEnd == guardStart || !line.startsWith("->", i)) {
+            return;
+        }
+        i = _skipSpaces(line, i + 2);
+        if (!line.startsWith("state", i)) {
+            return;
+        }
+        i = _skipSpaces(line, i + "state".length());
+        int dstEnd = _skipDigits(line, i);
+        if (dstEnd == i) {
+            return;
+        }
+        String _dest_str = line.substring(i, dstEnd);
+        // no loops
+        if (_source_str.equals(_dest_str)) {
+            return;
+        }
+        if (sum <= 1) {
+            String guard = line.substring(guardStart, guardEnd);
+            if (dontCare) {
+                // if the guard, without X, is > 1, we ignore it.
+                // if the guard, without X, is = 1, replaceAll(X, 0)
+                // if the guard, without X, is = 0, we compute only the combinantions with 0 <= sum <= 1
+                for (String l : new Guard(guard).getFlat()) {
+                    transitions.add(String.format("%s,%s,%s", _source_str, l, _dest_str));
                 }
+            } else {
+                transitions.add(String.format("%s,%s,%s", _source_str, guard, _dest_str));
             }
         }
+    }
 
-        Set<Integer> all_states = new HashSet<>(accepting_states);
-        all_states.addAll(rejecting_states);
-        return new AutomatonTemplate(alphabet, transitions, all_states, init_state, accepting_states);
+    private static int _skipSpaces(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int _skipDigits(String line, int i) {
+        while (i < line.length() && Character.isDigit(line.charAt(i))) {
+            i++;
+        }
+        return i;
     }
 
     public static void main(String[] args) {
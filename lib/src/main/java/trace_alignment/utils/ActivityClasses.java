@@ -0,0 +1,89 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import trace_alignment.automaton.AutomatonTemplate;
+
+import java.util.*;
+
+/**
+ * The partition of the activities into classes of activities that behave the same in every constraint automaton,
+ * i.e. that lead every state of every automaton to the same successor. Typically all the activities outside the
+ * alphabets of the constraints form a single class. Compiling the traces over one representative per class gives
+ * the same alignment costs with far fewer activities to add.
+ * <p>
+ * The representative of a class is the first of its activities ever classified. Thread-safe.
+ */
+public class ActivityClasses {
+    private final List<List<String>> alphabets = new ArrayList<>();
+    private final List<int[]> behaviours = new ArrayList<>();
+    private final Map<String, String> representatives = new HashMap<>();
+    private final Map<List<Integer>, String> classes = new HashMap<>();
+
+    /*
+     * The templates must not have been trimmed by a STRIPS instantiation yet.
+     */
+    public ActivityClasses(Collection<AutomatonTemplate> templates) {
+        for (AutomatonTemplate at : templates) {
+            this.alphabets.add(at.getAlphabet());
+            this.behaviours.add(at.getBehaviours());
+        }
+    }
+
+    public synchronized String getRepresentative(String activity) {
+        String representative = this.representatives.get(activity);
+        if (representative == null) {
+            List<Integer> signature = new ArrayList<>(this.behaviours.size());
+            for (int j = 0; j < this.behaviours.size(); j++) {
+                int symbol = this.alphabets.get(j).indexOf(activity);
+                signature.add(this.behaviours.get(j)[symbol < 0 ? this.alphabets.get(j).size() : symbol]);
+            }
+            representative = this.classes.computeIfAbsent(signature, c -> activity);
+            this.representatives.put(activity, representative);
+        }
+        return representative;
+    }
+
+    /**
+     * @return the representatives of the classes of the activities.
+     */
+    public HashSet<String> getRepresentatives(Collection<String> activities) {
+        HashSet<String> result = new HashSet<>();
+        for (String a : activities) {
+            result.add(this.getRepresentative(a));
+        }
+        return result;
+    }
+
+    /**
+     * @return a copy of the trace where every event is replaced by the representative of its class.
+     */
+    public Trace map(Trace t) {
+        List<String> events = new ArrayList<>(t.getTrace_alphabet().size());
+        for (String e : t.getTrace_alphabet()) {
+            events.add(this.getRepresentative(e));
+        }
+        Trace mapped = new Trace(t.getName());
+        mapped.setTrace_alphabet(events);
+        return mapped;
+    }
+
+    /**
+     * @return the number of classes of the activities classified so far.
+     */
+    public synchronized int size() {
+        return this.classes.size();
+    }
+}
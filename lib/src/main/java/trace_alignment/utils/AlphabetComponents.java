@@ -0,0 +1,120 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import trace_alignment.automaton.AutomatonTemplate;
+
+import java.util.*;
+
+/**
+ * The connected components of the constraints, two constraints being connected when their alphabets share an
+ * activity. When no constraint automaton moves on the activities outside its alphabet, the components are
+ * independent: a trace aligns with each component on its projection onto the alphabet of the component, and the
+ * optimal alignment cost is the sum of the costs of the components.
+ * <p>
+ * Components are numbered in order of their first template.
+ */
+public class AlphabetComponents {
+    private final List<List<AutomatonTemplate>> templates = new ArrayList<>();
+    private final List<Set<String>> alphabets = new ArrayList<>();
+    private final Map<String, Integer> components = new HashMap<>();
+    private final boolean independent;
+
+    /*
+     * The templates must not have been trimmed by a STRIPS instantiation yet.
+     */
+    public AlphabetComponents(Collection<AutomatonTemplate> templates) {
+        List<AutomatonTemplate> list = new ArrayList<>(templates);
+        int[] parent = new int[list.size()];
+        Map<String, Integer> owners = new HashMap<>();
+        boolean idle = true;
+        for (int i = 0; i < list.size(); i++) {
+            parent[i] = i;
+            for (String a : list.get(i).getAlphabet()) {
+                Integer j = owners.putIfAbsent(a, i);
+                if (j != null) {
+                    parent[_find(parent, i)] = _find(parent, j);
+                }
+            }
+            idle &= list.get(i).isOtherIdle();
+        }
+        this.independent = idle;
+        Map<Integer, Integer> ids = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            Integer c = ids.get(_find(parent, i));
+            if (c == null) {
+                c = this.templates.size();
+                ids.put(_find(parent, i), c);
+                this.templates.add(new ArrayList<>());
+                this.alphabets.add(new HashSet<>());
+            }
+            this.templates.get(c).add(list.get(i));
+            this.alphabets.get(c).addAll(list.get(i).getAlphabet());
+            for (String a : list.get(i).getAlphabet()) {
+                this.components.put(a, c);
+            }
+        }
+    }
+
+    private static int _find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return false if some constraint automaton moves on the activities outside its alphabet, in which case the
+     * components cannot be aligned separately.
+     */
+    public boolean isIndependent() {
+        return this.independent;
+    }
+
+    public int size() {
+        return this.templates.size();
+    }
+
+    public List<AutomatonTemplate> getTemplates(int component) {
+        return this.templates.get(component);
+    }
+
+    public Set<String> getAlphabet(int component) {
+        return this.alphabets.get(component);
+    }
+
+    /**
+     * @return the component whose alphabet contains the activity, -1 for none.
+     */
+    public int getComponent(String activity) {
+        return this.components.getOrDefault(activity, -1);
+    }
+
+    /**
+     * @return a copy of the trace with only the events of the alphabet of the component.
+     */
+    public Trace project(Trace t, int component) {
+        List<String> events = new ArrayList<>();
+        for (String e : t.getTrace_alphabet()) {
+            if (this.getComponent(e) == component) {
+                events.add(e);
+            }
+        }
+        Trace projected = new Trace(t.getName());
+        projected.setTrace_alphabet(events);
+        return projected;
+    }
+}
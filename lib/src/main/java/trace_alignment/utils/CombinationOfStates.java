@@ -17,7 +17,9 @@
 package trace_alignment.utils;
 
 import trace_alignment.automaton.State;
+import trace_alignment.encodings.PddlWriter;
 
+import java.io.IOException;
 import java.util.*;
 
 public class CombinationOfStates {
@@ -32,24 +34,33 @@ public class CombinationOfStates {
         this.automata = involvedAutomata;
     }
 
-    public List<String> generatePreString() {
-        List<String> pre = new ArrayList<>();
+    public void writePre(PddlWriter pre) throws IOException {
         HashSet<State> combined = new HashSet<>(this.inStates);
         combined.addAll(this.otherGoalStates);
         for (State s : combined) {
-            pre.add(String.format("(cur_state s_%s_%s) ", s.getAutomatonId(), s.getName()));
+            pre.append("(cur_state ").state(s.getAutomatonId(), s.getName()).append(") ");
         }
-        return pre;
     }
 
-    public StringBuilder generateEffString() {
-        StringBuilder eff = new StringBuilder("(and ");
+    public void writeEff(PddlWriter eff) throws IOException {
+        eff.append("(and ");
         for (State s : this.inStates) {
-            eff.append(String.format("(cur_state s_%s_goal) (not (cur_state s_%s_%s)) ", s.getAutomatonId(),
-                    s.getAutomatonId(), s.getName()));
+            eff.append("(cur_state s_").append(s.getAutomatonId()).append("_goal) (not (cur_state ").state(s.getAutomatonId(), s.getName()).append(")) ");
         }
         eff.append(")");
-        return eff;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CombinationOfStates)) return false;
+        CombinationOfStates that = (CombinationOfStates) o;
+        return Objects.equals(inStates, that.inStates) && Objects.equals(otherGoalStates, that.otherGoalStates) && Objects.equals(automata, that.automata);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(inStates, otherGoalStates, automata);
     }
 
     @Override
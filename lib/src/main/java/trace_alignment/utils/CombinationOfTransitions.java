@@ -17,7 +17,9 @@
 package trace_alignment.utils;
 
 import trace_alignment.automaton.Transition;
+import trace_alignment.encodings.PddlWriter;
 
+import java.io.IOException;
 import java.util.*;
 
 public class CombinationOfTransitions {
@@ -52,69 +54,61 @@ public class CombinationOfTransitions {
         return outTransitions;
     }
 
-    public StringBuilder generateAddString(int nb) {
-        StringBuilder add = new StringBuilder(String.format("(:action add-%s-c%d\n", this.label, nb));
+    public void writeAdd(PddlWriter add, int nb) throws IOException {
+        add.append("(:action add-").id(this.label).append("-c").append(nb).append("\n");
         add.append(":parameters ()\n");
         add.append(":precondition (and ");
-        Set<Transition<String>> combined = new HashSet<>(this.inTransitions);
-        combined.addAll(this.outTransitions);
-        for (Transition<String> t : combined) {
-            if (this.inTransitions.contains(t)) {
-                add.append(String.format("(cur_state s_%s_%s) ",
-                        t.getInputState().getAutomatonId(), t.getInputState().getName()));
-            }
-            else {
-                assert this.outTransitions.contains(t);
-                add.append(String.format("(not (cur_state s_%s_%s)) ",
-                        t.getInputState().getAutomatonId(), t.getInputState().getName()));
-            }
-        }
+        this.writePre(add);
         add.append(")\n");
         add.append(":effect (and ");
         add.append("(increase (total-cost) 1) ");
-        for (Transition<String> t : combined) {
-            if (this.inTransitions.contains(t)) {
-                add.append(String.format("(not (cur_state s_%s_%s)) ",
-                        t.getInputState().getAutomatonId(), t.getInputState().getName()));
-                add.append(String.format("(cur_state s_%s_%s) ",
-                        t.getOutputState().getAutomatonId(), t.getOutputState().getName()));
-            }
-        }
+        this.writeEff(add);
         add.append(")\n)\n\n");
-        return add;
     }
 
-    public StringBuilder generateSyncString(Transition<String> tr, int nb) {
-        StringBuilder sync = new StringBuilder(String.format("(:action sync-%s-c%d\n", this.label, nb));
+    public void writeSync(PddlWriter sync, Transition<String> tr, int nb) throws IOException {
+        sync.append("(:action sync-").id(this.label).append("-c").append(nb).append("\n");
         sync.append(":parameters ()\n");
         sync.append(":precondition (and ");
+        this.writePre(sync);
+        sync.append("(cur_state t").append(tr.getInputState().getName()).append("))\n");
+        sync.append(":effect (and ");
+        this.writeEff(sync);
+        sync.append("(not (cur_state t").append(tr.getInputState().getName()).append(")) (cur_state t").append(tr.getOutputState().getName()).append("))\n");
+
+        sync.append(")\n\n");
+    }
+
+    /*
+     * The automata of the in transitions are in their source states, the others are not in the sources of the out
+     * transitions.
+     */
+    public void writePre(PddlWriter pre) throws IOException {
         Set<Transition<String>> combined = new HashSet<>(this.inTransitions);
         combined.addAll(this.outTransitions);
         for (Transition<String> t : combined) {
             if (this.inTransitions.contains(t)) {
-                sync.append(String.format("(cur_state s_%s_%s) ",
-                        t.getInputState().getAutomatonId(), t.getInputState().getName()));
+                pre.append("(cur_state ").state(t.getInputState().getAutomatonId(), t.getInputState().getName()).append(") ");
             }
             else {
                 assert this.outTransitions.contains(t);
-                sync.append(String.format("(not (cur_state s_%s_%s)) ",
-                        t.getInputState().getAutomatonId(), t.getInputState().getName()));
+                pre.append("(not (cur_state ").state(t.getInputState().getAutomatonId(), t.getInputState().getName()).append(")) ");
             }
         }
-        sync.append(String.format("(cur_state t%s))\n", tr.getInputState().getName()));
-        sync.append(":effect (and ");
+    }
+
+    /*
+     * The automata of the in transitions move to their destination states.
+     */
+    public void writeEff(PddlWriter eff) throws IOException {
+        Set<Transition<String>> combined = new HashSet<>(this.inTransitions);
+        combined.addAll(this.outTransitions);
         for (Transition<String> t : combined) {
             if (this.inTransitions.contains(t)) {
-                sync.append(String.format("(not (cur_state s_%s_%s)) ",
-                        t.getInputState().getAutomatonId(), t.getInputState().getName()));
-                sync.append(String.format("(cur_state s_%s_%s) ",
-                        t.getOutputState().getAutomatonId(), t.getOutputState().getName()));
+                eff.append("(not (cur_state ").state(t.getInputState().getAutomatonId(), t.getInputState().getName()).append(")) ");
+                eff.append("(cur_state ").state(t.getOutputState().getAutomatonId(), t.getOutputState().getName()).append(") ");
             }
         }
-        sync.append(String.format("(not (cur_state t%s)) (cur_state t%s))\n", tr.getInputState().getName(), tr.getOutputState().getName()));
-
-        sync.append(")\n\n");
-        return sync;
     }
 
     @Override
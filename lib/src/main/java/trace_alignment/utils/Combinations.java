@@ -19,75 +19,131 @@ import trace_alignment.automaton.State;
 import trace_alignment.automaton.Transition;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 public class Combinations {
 
-    private static <T extends AutomatonComponents> Set<String> _distictAutomata(Set<T> comb) {
-        return comb.stream().map(T::getAutomatonId).collect(Collectors.toSet());
+    private static boolean _deadEnd(Transition<String> t) {
+        return t.getOutputState().getName().equals("ink");
     }
 
-    private static <T extends AutomatonComponents> boolean _deadEndInCombination(Set<Transition<T>> comb) {
-        return comb.stream().anyMatch(t -> t.getOutputState().getName().equals("ink"));
+    /**
+     * @return the combinations of k accept states from pairwise distinct automata, each one with the states of s as
+     * other goal states, in enumeration order.
+     */
+    public static List<CombinationOfStates> combinationsOfStates(List<State> l, int k, HashSet<State> s) {
+        List<CombinationOfStates> combStates = new ArrayList<>();
+        Iterator<List<State>> it = distinctAutomata(l, k, c -> true);
+        while (it.hasNext()) {
+            List<State> combination = it.next();
+            HashSet<String> automata = new HashSet<>();
+            combination.forEach(c -> automata.add(c.getAutomatonId()));
+            combStates.add(new CombinationOfStates(new HashSet<>(combination), s, automata));
+        }
+        return combStates;
+    }
+
+    /**
+     * @return the combinations of k transitions labelled by label, from pairwise distinct automata and not leading to
+     * a dead end, each one with the other transitions of l as out transitions. Built one at a time.
+     */
+    public static Iterator<CombinationOfTransitions> transitions(String label, List<Transition<String>> l, int k) {
+        Iterator<List<Transition<String>>> it = distinctAutomata(l, k, t -> !_deadEnd(t));
+        return new Iterator<CombinationOfTransitions>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public CombinationOfTransitions next() {
+                HashSet<Transition<String>> combination = new HashSet<>(it.next());
+                HashSet<Transition<String>> reminder = new HashSet<>(l);
+                reminder.removeIf(combination::contains);
+                return new CombinationOfTransitions(label, k, combination, reminder);
+            }
+        };
     }
 
-    public static <T extends AutomatonComponents> ArrayList<?> combinations(List<T> l, int k, HashSet<State> s) {
-        return combinations("", l, k, s);
+    /**
+     * @return the subsets of k elements of l accepted by filter and belonging to pairwise distinct automata, in the
+     * lexicographic order of their positions in l. A partial subset is abandoned as soon as two of its elements share
+     * an automaton, so rejected subsets are never built.
+     */
+    public static <T extends AutomatonComponents> Iterator<List<T>> distinctAutomata(List<T> l, int k, Predicate<T> filter) {
+        return new DistinctAutomata<>(l, k, filter);
     }
 
-    public static <T extends AutomatonComponents> ArrayList<?> combinations(String label, List<T> l, int k, HashSet<State> s) {
-        HashSet<CombinationOfStates> combStates = new HashSet<>();
-        ArrayList<CombinationOfTransitions> combTrans = new ArrayList<>();
-        int n = l.size();
-        if (k > n) {
-            System.out.println("Invalid input, k > n");
-            return null;
+    private static class DistinctAutomata<T extends AutomatonComponents> implements Iterator<List<T>> {
+        private final List<T> l;
+        private final int k;
+        private final Predicate<T> filter;
+        private final int[] pointers;
+        private final Set<String> automata = new HashSet<>();
+        private int r = 0;
+        private int i = 0;
+        private List<T> next;
+
+        private DistinctAutomata(List<T> l, int k, Predicate<T> filter) {
+            this.l = l;
+            this.k = k;
+            this.filter = filter;
+            this.pointers = new int[k];
+            if (k <= 0 || k > l.size()) {
+                this.r = -1;
+            }
+            _advance();
         }
-        // init combination index array
-        int[] pointers = new int[k];
-        int r = 0;
-        int i = 0;
 
-        while (r >= 0) {
-            // forward step if i <= (N + (r-K))
-            if (i <= (n + (r - k))) {
-                pointers[r] = i;
-                // if combination array is full, set and increment i;
-                if (r == k - 1) {
-                    Set<T> combination = Arrays.stream(pointers).mapToObj(l::get).collect(Collectors.toSet());
-                    Set<String> distinctAutomata = _distictAutomata(combination);
-                    if (distinctAutomata.size() == k) {
-                        if (label.isEmpty()) {
-                            combStates.add(new CombinationOfStates((HashSet<State>) combination, s,
-                                    (HashSet<String>) distinctAutomata));
-                        } else {
-                            if (!_deadEndInCombination((HashSet<Transition<T>>) combination)) {
-                                HashSet<T> reminder = new HashSet<>(l);
-                                reminder.removeIf(combination::contains);
-                                combTrans.add(new CombinationOfTransitions(label, k,
-                                        (HashSet<Transition<String>>) combination, (HashSet<Transition<String>>) reminder));
-                            }
+        /*
+         * Backtracking: pointers[0..r-1] is a partial subset from distinct automata, i the next candidate for
+         * position r.
+         */
+        private void _advance() {
+            this.next = null;
+            while (this.r >= 0) {
+                if (this.i <= this.l.size() - (this.k - this.r)) {
+                    T candidate = this.l.get(this.i);
+                    if (!this.filter.test(candidate) || this.automata.contains(candidate.getAutomatonId())) {
+                        this.i++;
+                        continue;
+                    }
+                    this.pointers[this.r] = this.i;
+                    if (this.r == this.k - 1) {
+                        this.next = new ArrayList<>(this.k);
+                        for (int p : this.pointers) {
+                            this.next.add(this.l.get(p));
                         }
+                        this.i++;
+                        return;
+                    }
+                    this.automata.add(candidate.getAutomatonId());
+                    this.r++;
+                    this.i++;
+                }
+                else {
+                    this.r--;
+                    if (this.r >= 0) {
+                        this.automata.remove(this.l.get(this.pointers[this.r]).getAutomatonId());
+                        this.i = this.pointers[this.r] + 1;
                     }
-                    i++;
-                } else {
-                    // if combination is not full yet, select next element
-                    i = pointers[r] + 1;
-                    r++;
                 }
-            }
-            // backward step
-            else {
-                r--;
-                if (r >= 0)
-                    i = pointers[r] + 1;
             }
         }
-        if (label.isEmpty()) {
-            return new ArrayList<>(combStates);
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
         }
-        else {
-            return combTrans;
+
+        @Override
+        public List<T> next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            List<T> current = this.next;
+            _advance();
+            return current;
         }
     }
 
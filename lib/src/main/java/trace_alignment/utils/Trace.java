@@ -33,6 +33,10 @@ public class Trace {
 		return name;
 	}
 
+	public List<String> getTrace_alphabet() {
+		return trace_alphabet;
+	}
+
 	public void setTrace_alphabet(List<String> trace_alphabet) {
 		this.trace_alphabet = trace_alphabet;
 	}
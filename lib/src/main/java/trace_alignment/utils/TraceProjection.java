@@ -0,0 +1,85 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import trace_alignment.automaton.AutomatonTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Projection of the traces on the activities relevant to the constraints. When every "other" edge of every constraint
+ * automaton is a self-loop, the events of an activity outside all the alphabets never change any automaton state:
+ * an optimal alignment keeps them as synchronous moves of cost 0, so they can be dropped from the problem and the
+ * alignment of the projection has the same cost (the cost offset of the projection is always 0). Traces whose
+ * projections coincide are then aligned once.
+ * <p>
+ * Thread-safe.
+ */
+public class TraceProjection {
+    private final Set<String> relevant = new HashSet<>();
+    private final boolean enabled;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /*
+     * The templates must not have been trimmed by a STRIPS instantiation yet.
+     */
+    public TraceProjection(Collection<AutomatonTemplate> templates) {
+        boolean idle = true;
+        for (AutomatonTemplate at : templates) {
+            this.relevant.addAll(at.getAlphabet());
+            idle &= at.isOtherIdle();
+        }
+        this.enabled = idle;
+    }
+
+    /**
+     * @return false if some constraint automaton can move on an activity outside its alphabet, in which case no event
+     * is ever dropped.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return true iff the events of the activity can be dropped.
+     */
+    public boolean isIdle(String activity) {
+        return this.enabled && !this.relevant.contains(activity);
+    }
+
+    /**
+     * @return a copy of the trace without the events that can be dropped.
+     */
+    public Trace project(Trace t) {
+        List<String> events = new ArrayList<>(t.getTrace_alphabet().size());
+        for (String e : t.getTrace_alphabet()) {
+            if (!this.isIdle(e)) {
+                events.add(e);
+            }
+        }
+        this.dropped.addAndGet(t.getTrace_alphabet().size() - events.size());
+        Trace projected = new Trace(t.getName());
+        projected.setTrace_alphabet(events);
+        return projected;
+    }
+
+    /**
+     * @return the number of events dropped so far.
+     */
+    public long getNbDropped() {
+        return this.dropped.get();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import java.util.*;
+
+/**
+ * Groups log traces by their (normalized) activity sequence. Each distinct sequence is a variant, identified by a
+ * dense id assigned in order of first occurrence in the log.
+ */
+public class TraceVariants {
+    private final Map<List<String>, Integer> variantIds = new HashMap<>();
+    private final List<Trace> representatives = new ArrayList<>();
+    private final List<List<String>> members = new ArrayList<>();
+
+    /**
+     * @param t a trace whose alphabet has already been set.
+     * @return the id of the variant the trace belongs to.
+     */
+    public int add(Trace t) {
+        Integer id = this.variantIds.get(t.getTrace_alphabet());
+        if (id == null) {
+            id = this.representatives.size();
+            this.variantIds.put(t.getTrace_alphabet(), id);
+            this.representatives.add(t);
+            this.members.add(new ArrayList<>());
+        }
+        this.members.get(id).add(t.getName());
+        return id;
+    }
+
+    public int size() {
+        return this.representatives.size();
+    }
+
+    public Trace getRepresentative(int variant) {
+        return this.representatives.get(variant);
+    }
+
+    public List<Trace> getRepresentatives() {
+        return this.representatives;
+    }
+
+    public List<String> getMembers(int variant) {
+        return this.members.get(variant);
+    }
+
+    public int getMultiplicity(int variant) {
+        return this.members.get(variant).size();
+    }
+
+    public int getNbTraces() {
+        return this.members.stream().mapToInt(List::size).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TraceVariants{" +
+                "variants=" + this.representatives.size() +
+                ", traces=" + this.getNbTraces() +
+                '}';
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+import trace_alignment.utils.Trace;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlignmentEngineTest {
+
+    /*
+     *  Templates as parsed from Lydia: init(a), response(a, b) and existence(c).
+     */
+    private AutomatonTemplate init() {
+        return new AutomatonTemplate(new ArrayList<>(Collections.singletonList("a")),
+                new HashSet<>(Arrays.asList("0,0,1", "0,1,2")), new HashSet<>(Arrays.asList(0, 1, 2)), 0,
+                new HashSet<>(Collections.singletonList(2)));
+    }
+
+    private AutomatonTemplate response() {
+        return new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(0)));
+    }
+
+    private AutomatonTemplate existence() {
+        return new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                new HashSet<>(Collections.singletonList("0,1,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(1)));
+    }
+
+    private Alignment align(List<String> trace, AutomatonTemplate... templates) {
+        HashSet<String> activities = new HashSet<>(trace);
+        for (AutomatonTemplate at : templates) {
+            activities.addAll(at.getAlphabet());
+        }
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+        }
+        Alignment alignment = new AlignmentEngine(constraint).align(trace);
+        // the alignment must replay the whole trace and its cost must be the number of non-sync moves
+        List<String> replayed = new ArrayList<>();
+        int cost = 0;
+        for (Move m : alignment.getMoves()) {
+            if (m.getType() != Move.Type.ADD) {
+                replayed.add(m.getActivity());
+            }
+            cost += m.getCost();
+        }
+        assertEquals(trace, replayed);
+        assertEquals(cost, alignment.getCost());
+        return alignment;
+    }
+
+    @Test
+    void testConformingTrace() {
+        Alignment alignment = align(Arrays.asList("a", "c", "b"), init(), response());
+        assertEquals(0, alignment.getCost());
+        assertEquals(Arrays.asList(new Move(Move.Type.SYNC, "a"), new Move(Move.Type.SYNC, "c"),
+                new Move(Move.Type.SYNC, "b")), alignment.getMoves());
+    }
+
+    @Test
+    void testAddMissingActivity() {
+        Alignment alignment = align(Arrays.asList("a", "b"), init(), response(), existence());
+        assertEquals(1, alignment.getCost());
+        assertTrue(alignment.getMoves().contains(new Move(Move.Type.ADD, "c")));
+    }
+
+    @Test
+    void testDeviatingTrace() {
+        assertEquals(2, align(Arrays.asList("b", "a"), init(), response()).getCost());
+        assertEquals(1, align(Arrays.asList("a", "b", "a"), init(), response()).getCost());
+        assertEquals(2, align(Arrays.asList("c", "a", "a"), init(), response()).getCost());
+    }
+
+    @Test
+    void testEmptyTrace() {
+        assertEquals(2, align(Collections.emptyList(), init(), existence()).getCost());
+        assertEquals(0, align(Collections.emptyList(), response()).getCost());
+    }
+
+    @Test
+    void testTraceAutomaton() {
+        Trace t = new Trace("t");
+        t.setTrace_alphabet(Arrays.asList("b", "a", "b"));
+        Set<Automaton<String>> constraint = new HashSet<>();
+        constraint.add(init().computeAutomatonWithDeadEnds(new HashSet<>(Arrays.asList("a", "b"))));
+        constraint.add(response().computeAutomatonWithDeadEnds(new HashSet<>(Arrays.asList("a", "b"))));
+        Alignment alignment = new AlignmentEngine(constraint).align(t.computeTraceAutomaton());
+        assertEquals(1, alignment.getCost());
+        assertEquals(3, alignment.getMoves().stream().filter(m -> m.getType() != Move.Type.ADD).count());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlignmentTest {
+
+    @Test
+    void testFromGeneralPlan() {
+        Alignment a = Alignment.fromPlan("t", -1, 2, Arrays.asList("sync t0 a_complete t1", "add b_complete",
+                "del t1 c_complete t2", "goto-goal t2 dummy"), 5);
+        assertEquals(Arrays.asList(new Move(Move.Type.SYNC, "a_complete"), new Move(Move.Type.ADD, "b_complete"),
+                new Move(Move.Type.DEL, "c_complete")), a.getMoves());
+        assertEquals(1, a.getNbMoves(Move.Type.ADD));
+        assertEquals(1.0 / 3, a.getFitness(), 1e-9);
+    }
+
+    @Test
+    void testFromStripsPlan() {
+        Alignment a = Alignment.fromPlan("t", 0, 1, Arrays.asList("sync-a_complete-t0t1", "add-b_complete-c12",
+                "gotogoal-c3"), 5);
+        assertEquals(Arrays.asList(new Move(Move.Type.SYNC, "a_complete"), new Move(Move.Type.ADD, "b_complete")),
+                a.getMoves());
+        assertEquals(0.5, a.getFitness(), 1e-9);
+    }
+
+    @Test
+    void testOnEvents() {
+        Alignment a = Alignment.fromPlan("t", -1, 2, Arrays.asList("sync t0 x t1", "add x", "del t1 a t2"), 5);
+        assertEquals(new Alignment("t", -1, 2, Arrays.asList(new Move(Move.Type.SYNC, "y"),
+                new Move(Move.Type.ADD, "x"), new Move(Move.Type.DEL, "a")), 5), a.onEvents(Arrays.asList("y", "a")));
+    }
+
+    @Test
+    void testOnProjectedEvents() {
+        Alignment a = Alignment.fromPlan("t", -1, 1, Arrays.asList("add x", "sync t0 a t1"), 5);
+        assertEquals(new Alignment("t", -1, 1, Arrays.asList(new Move(Move.Type.ADD, "x"),
+                new Move(Move.Type.SYNC, "y"), new Move(Move.Type.SYNC, "a"), new Move(Move.Type.SYNC, "y")), 5),
+                a.onEvents(Arrays.asList("y", "a", "y"), "y"::equals));
+    }
+}
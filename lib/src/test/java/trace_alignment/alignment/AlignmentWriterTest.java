@@ -0,0 +1,65 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlignmentWriterTest {
+    private final Alignment fitting = new Alignment("t,0", -1, 0, Arrays.asList(new Move(Move.Type.SYNC, "a"),
+            new Move(Move.Type.SYNC, "b")), 3);
+    private final Alignment deviating = new Alignment("t\"1", 2, 1, Arrays.asList(new Move(Move.Type.SYNC, "a"),
+            new Move(Move.Type.DEL, "c")), 4);
+
+    @Test
+    void testCsv() throws Exception {
+        File f = File.createTempFile("alignments", ".csv");
+        f.deleteOnExit();
+        assertEquals(AlignmentWriter.Format.CSV, AlignmentWriter.formatOf(f));
+        try (AlignmentWriter writer = new AlignmentWriter(f, AlignmentWriter.Format.CSV)) {
+            writer.write(fitting);
+            writer.write(deviating);
+            writer.write(new Alignment("empty", -1, 0, Collections.emptyList(), 0));
+            assertEquals(3, writer.getNbTraces());
+            assertEquals(1, writer.getTotalCost());
+            assertEquals((1.0 + 0.5 + 1.0) / 3, writer.getLogFitness(), 1e-9);
+        }
+        List<String> lines = FileUtils.readLines(f, StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(AlignmentWriter.CSV_HEADER,
+                "\"t,0\",-1,0,2,0,0,1.000000,3",
+                "\"t\"\"1\",2,1,1,0,1,0.500000,4",
+                "empty,-1,0,0,0,0,1.000000,0"), lines);
+    }
+
+    @Test
+    void testJsonLines() throws Exception {
+        File f = File.createTempFile("alignments", ".jsonl");
+        f.deleteOnExit();
+        try (AlignmentWriter writer = new AlignmentWriter(f, AlignmentWriter.formatOf(f))) {
+            writer.write(deviating);
+        }
+        assertEquals("{\"trace\":\"t\\\"1\",\"variant\":2,\"cost\":1,\"sync\":1,\"add\":0,\"del\":1," +
+                        "\"fitness\":0.500000,\"time_ms\":4,\"moves\":[\"sync-a\",\"del-c\"]}",
+                FileUtils.readFileToString(f, StandardCharsets.UTF_8).trim());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.alignment;
+
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConformanceFilterTest {
+
+    /*
+     *  Templates as parsed from Lydia: init(a), response(a, b) and existence(c).
+     */
+    private List<AutomatonTemplate> templates() {
+        return Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Collections.singletonList("a")),
+                        new HashSet<>(Arrays.asList("0,0,1", "0,1,2")), new HashSet<>(Arrays.asList(0, 1, 2)), 0,
+                        new HashSet<>(Collections.singletonList(2))),
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                        new HashSet<>(Collections.singletonList("0,1,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))));
+    }
+
+    @Test
+    void testConforms() {
+        ConformanceFilter filter = new ConformanceFilter(templates());
+        assertTrue(filter.conforms(Arrays.asList("a", "c", "b")));
+        assertTrue(filter.conforms(Arrays.asList("a", "d", "c", "e", "b", "c")));
+        assertFalse(filter.conforms(Arrays.asList("a", "b")));
+        assertFalse(filter.conforms(Arrays.asList("d", "a", "c", "b")));
+        assertFalse(filter.conforms(Arrays.asList("a", "c", "b", "a")));
+        assertFalse(filter.conforms(Collections.emptyList()));
+
+        Alignment alignment = filter.align(Arrays.asList("a", "c", "b"));
+        assertEquals(0, alignment.getCost());
+        assertEquals(3, alignment.getNbMoves(Move.Type.SYNC));
+        assertNull(filter.align(Arrays.asList("b", "a")));
+    }
+
+    @Test
+    void testSameAsEngine() {
+        ConformanceFilter filter = new ConformanceFilter(templates());
+        List<List<String>> traces = Arrays.asList(Arrays.asList("a", "c", "b"), Arrays.asList("a", "b"),
+                Arrays.asList("c", "a", "x", "b"), Arrays.asList("a", "x", "c"), Arrays.asList("a", "b", "c", "a"));
+        for (List<String> trace : traces) {
+            HashSet<String> activities = new HashSet<>(Arrays.asList("a", "b", "c", "x"));
+            Set<Automaton<String>> constraint = new HashSet<>();
+            for (AutomatonTemplate at : templates()) {
+                constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+            }
+            int cost = new AlignmentEngine(constraint).align(trace).getCost();
+            assertEquals(cost == 0, filter.conforms(trace), trace.toString());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.automaton;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutomatonTemplateTest {
+
+    /*
+     *  response(a, b) with every state doubled, plus an unreachable state 5.
+     */
+    private AutomatonTemplate redundantResponse() {
+        return new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList("0,10,1", "1,01,2", "2,10,3", "3,01,2", "5,10,0")),
+                new HashSet<>(Arrays.asList(0, 1, 2, 3, 5)), 0, new HashSet<>(Arrays.asList(0, 2, 5)));
+    }
+
+    /*
+     *  init(a) with two distinct sinks, one for b and one for the other activities.
+     */
+    private AutomatonTemplate twoSinksInit() {
+        return new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList("0,10,2", "0,00,1", "0,01,3")),
+                new HashSet<>(Arrays.asList(0, 1, 2, 3)), 0, new HashSet<>(Collections.singletonList(2)));
+    }
+
+    @Test
+    void testMinimize() {
+        assertEquals(new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(0))), redundantResponse().minimize());
+        assertEquals(new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList("0,10,2", "0,00,1", "0,01,1")), new HashSet<>(Arrays.asList(0, 1, 2)), 0,
+                new HashSet<>(Collections.singletonList(2))), twoSinksInit().minimize());
+    }
+
+    @Test
+    void testSameLanguage() {
+        List<String> activities = Arrays.asList("a", "b", "x");
+        Random random = new Random(42);
+        for (AutomatonTemplate at : Arrays.asList(redundantResponse(), twoSinksInit())) {
+            CompiledAutomaton<String> original = at.computeAutomatonWithDeadEnds(new HashSet<>(activities)).compile();
+            CompiledAutomaton<String> minimal = at.minimize()
+                    .computeAutomatonWithDeadEnds(new HashSet<>(activities)).compile();
+            assertTrue(minimal.getNbStates() < original.getNbStates());
+            for (int i = 0; i < 500; i++) {
+                List<String> word = new ArrayList<>();
+                for (int j = random.nextInt(8); j > 0; j--) {
+                    word.add(activities.get(random.nextInt(activities.size())));
+                }
+                assertEquals(original.accepts(word), minimal.accepts(word), word.toString());
+            }
+        }
+    }
+
+    @Test
+    void testProduct() {
+        AutomatonTemplate existence = new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                new HashSet<>(Collections.singletonList("0,1,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(1)));
+        List<AutomatonTemplate> templates = Arrays.asList(redundantResponse(), twoSinksInit(), existence);
+        assertNull(AutomatonTemplate.product(templates, 3));
+        AutomatonTemplate product = AutomatonTemplate.product(templates, 1000);
+        assertEquals(Arrays.asList("a", "b", "c"), product.getAlphabet());
+        // init, a seen with no pending b, pending b, c seen with/without pending b, and the sink
+        assertEquals(6, product.size());
+
+        List<String> activities = Arrays.asList("a", "b", "c", "x");
+        List<CompiledAutomaton<String>> components = new ArrayList<>();
+        for (AutomatonTemplate at : templates) {
+            components.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)).compile());
+        }
+        CompiledAutomaton<String> compiled = product.computeAutomatonWithDeadEnds(new HashSet<>(activities)).compile();
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            List<String> word = new ArrayList<>();
+            for (int j = random.nextInt(8); j > 0; j--) {
+                word.add(activities.get(random.nextInt(activities.size())));
+            }
+            boolean all = components.stream().allMatch(a -> a.accepts(word));
+            assertEquals(all, compiled.accepts(word), word.toString());
+        }
+    }
+
+    @Test
+    void testIncrementalInstantiation() {
+        // existence(a) where any other activity resets the automaton
+        AutomatonTemplate at = new AutomatonTemplate(new ArrayList<>(Collections.singletonList("a")),
+                new HashSet<>(Arrays.asList("0,1,1", "1,0,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(1)));
+        Automaton<String> first = at.computeAutomatonNoDeadEnds(new HashSet<>(Arrays.asList("a", "x")));
+        assertEquals(2, first.getTransitionFunction().size());
+        Automaton<String> second = at.computeAutomatonNoDeadEnds(new HashSet<>(Arrays.asList("a", "x", "y")));
+        assertEquals(new HashSet<>(Arrays.asList("a", "x", "y")), second.getAlphabet());
+        assertEquals(3, second.getTransitionFunction().size());
+        assertTrue(second.getTransitionFunction().stream()
+                .anyMatch(t -> t.getSymbol().equals("y") && t.getInputState().getName().equals("1")
+                        && t.getOutputState().getName().equals("0")));
+        Automaton<String> pure = at.computeAutomatonWithDeadEnds(new HashSet<>(Arrays.asList("a", "y")));
+        assertEquals(2, pure.getTransitionFunction().size());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.automaton;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledAutomatonTest {
+
+    @Test
+    void testEvenNumberOf0() {
+        State even = new State("even", true, true);
+        State odd = new State("odd", false, false);
+        Set<Transition<Integer>> transitions = new HashSet<>(Arrays.asList(new Transition<>(even, 0, odd),
+                new Transition<>(odd, 0, even)));
+        Automaton<Integer> dfa = new Automaton<>(new HashSet<>(Arrays.asList(0, 1)),
+                new HashSet<>(Arrays.asList(even, odd)), transitions, new HashSet<>());
+        CompiledAutomaton<Integer> compiled = dfa.compile();
+
+        assertEquals(2, compiled.getNbStates());
+        assertEquals(even, compiled.getState(compiled.getInit()));
+        // missing transitions on 1 and unknown symbols leave the automaton in its state
+        assertTrue(compiled.accepts(Arrays.asList(1, 0, 1, 1, 0)));
+        assertFalse(compiled.accepts(Arrays.asList(1, 0, 1, 1, 0, 0)));
+        assertEquals(compiled.getInit(), compiled.step(compiled.getInit(), Integer.valueOf(7)));
+        assertEquals(-1, compiled.getSymbolId(7));
+    }
+
+    @Test
+    void testDeadEnds() {
+        // init(a): any other activity leads to the trimmed sink
+        AutomatonTemplate init = new AutomatonTemplate(new ArrayList<>(Collections.singletonList("a")),
+                new HashSet<>(Arrays.asList("0,0,1", "0,1,2")), new HashSet<>(Arrays.asList(0, 1, 2)), 0,
+                new HashSet<>(Collections.singletonList(2)));
+        CompiledAutomaton<String> compiled = init.computeAutomatonNoDeadEnds(
+                new HashSet<>(Arrays.asList("a", "b"))).compile();
+        assertTrue(compiled.accepts(Arrays.asList("a", "b")));
+        assertFalse(compiled.accepts(Arrays.asList("b", "a")));
+        assertEquals("ink", compiled.getState(compiled.run(Collections.singletonList("b"))).getName());
+    }
+}
@@ -17,7 +17,13 @@ package trace_alignment.automaton;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 
 class LydiaAutomatonTest {
@@ -119,4 +125,62 @@ class LydiaAutomatonTest {
         String actual = LydiaAutomaton.callLydia("G(a <-> X[!](b))", true);
         Assertions.assertEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCallLydiaBatch() throws IOException {
+        List<String> formulas = Arrays.asList("a", "F(a)", "G(a -> F(b))", "G(a <-> X[!](b))");
+        List<String> actual = LydiaAutomaton.callLydia(formulas, true, 3, 60);
+        Assertions.assertEquals(formulas.size(), actual.size());
+        for (int i = 0; i < formulas.size(); i++) {
+            Assertions.assertEquals(LydiaAutomaton.callLydia(formulas.get(i), true), actual.get(i));
+        }
+    }
+
+    /*
+     * Run the batch translation with a stub Lydia executing the given script.
+     */
+    private List<String> callStub(String script, long timeout) throws IOException {
+        File stub = Files.createTempFile("lydia", ".sh").toFile();
+        stub.deleteOnExit();
+        Files.write(stub.toPath(), ("#!/bin/bash\n" + script + "\n").getBytes(StandardCharsets.UTF_8));
+        Assertions.assertTrue(stub.setExecutable(true));
+        String executable = LydiaAutomaton.executable;
+        LydiaAutomaton.executable = stub.getPath();
+        try {
+            return LydiaAutomaton.callLydia(Collections.singletonList("F(a)"), true, 1, timeout);
+        } finally {
+            LydiaAutomaton.executable = executable;
+        }
+    }
+
+    @Test
+    public void testCallLydiaStub() throws IOException {
+        String dfa = "DFA for formula with free variables: a \n" +
+                "Initial state: 0\n" +
+                "Accepting states: 1 \n" +
+                "Rejecting states: 0 \n" +
+                "\n" +
+                "Automaton has 2 state(s) and 3 BDD-node(s)\n" +
+                "Transitions:\n" +
+                "State 0: 0 -> state 0\n" +
+                "State 0: 1 -> state 1\n" +
+                "State 1: X -> state 1\n";
+        Assertions.assertEquals(Collections.singletonList(dfa), callStub("cat > /dev/null\nprintf '" +
+                dfa.replace("\n", "\\n") + "'", 0));
+    }
+
+    @Test
+    public void testCallLydiaTimeout() {
+        IOException e = Assertions.assertThrows(IOException.class, () -> callStub("exec sleep 30", 1));
+        Assertions.assertTrue(e.getMessage().contains("F(a): timed out after 1 s"), e.getMessage());
+    }
+
+    @Test
+    public void testCallLydiaFailures() {
+        IOException e = Assertions.assertThrows(IOException.class, () -> callStub("echo 'bad syntax'\nexit 3", 0));
+        Assertions.assertTrue(e.getMessage().contains("F(a): exit code 3"), e.getMessage());
+        e = Assertions.assertThrows(IOException.class, () -> callStub("echo 'no automaton'", 0));
+        Assertions.assertTrue(e.getMessage().contains("F(a): invalid output: no automaton"), e.getMessage());
+        Assertions.assertFalse(e.getMessage().contains("exit code"), e.getMessage());
+    }
+}
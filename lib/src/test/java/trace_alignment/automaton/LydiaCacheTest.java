@@ -0,0 +1,52 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.automaton;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LydiaCacheTest {
+
+    @Test
+    public void testStoreAndLookup() throws IOException {
+        File dir = Files.createTempDirectory("lydia-cache").toFile();
+        dir.deleteOnExit();
+        LydiaCache cache = new LydiaCache(dir);
+        String existence = "DFA for formula with free variables: a \n" +
+                "Initial state: 0\n" +
+                "Accepting states: 1 \n" +
+                "Rejecting states: 0 \n" +
+                "\n" +
+                "Automaton has 2 state(s) and 3 BDD-node(s)\n" +
+                "Transitions:\n" +
+                "State 0: 0 -> state 0\n" +
+                "State 0: 1 -> state 1\n" +
+                "State 1: X -> state 1\n";
+        assertNull(cache.lookup("F(a)", true));
+        cache.store("F(a)", true, existence);
+        cache.store("F(b)", true, "ERROR");
+        assertEquals(existence, cache.lookup("F(a)", true));
+        assertNull(cache.lookup("F(a)", false));
+        assertNull(cache.lookup("F(b)", true));
+        assertEquals(existence, new LydiaCache(dir).lookup("F(a)", true));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+import trace_alignment.automaton.CompiledAutomaton;
+import trace_alignment.utils.Trace;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneralEncodingWildcardTest {
+
+    /*
+     * Run the word on the automata facts of the problem, as the sync action does.
+     */
+    private boolean accepts(String problem, List<String> word) {
+        Map<String, String> automaton = new HashMap<>();
+        Map<String, String> other = new HashMap<>();
+        Set<String> relevant = new HashSet<>();
+        Set<String> current = new HashSet<>();
+        Set<String> accepting = new HashSet<>();
+        for (String line : problem.split("\n")) {
+            String[] fact = line.replaceAll("[()]", "").split(" ");
+            if (fact[0].equals("automaton")) {
+                automaton.put(fact[1] + " " + fact[2], fact[3]);
+            } else if (fact[0].equals("other_trans")) {
+                other.put(fact[1], fact[2]);
+            } else if (fact[0].equals("relevant")) {
+                relevant.add(fact[1] + " " + fact[2]);
+            } else if (fact[0].equals("cur_state") && fact[1].startsWith("s_") && fact.length == 2) {
+                current.add(fact[1]);
+            } else if (fact[0].equals("final_state") && fact[1].startsWith("s_")) {
+                accepting.add(fact[1]);
+            }
+        }
+        for (String e : word) {
+            Set<String> next = new HashSet<>();
+            for (String s : current) {
+                String d = automaton.get(s + " " + e);
+                if (d == null && other.containsKey(s) && !relevant.contains(s + " " + e)) {
+                    d = other.get(s);
+                }
+                next.add(d == null ? s : d);
+            }
+            current = next;
+        }
+        return accepting.containsAll(current);
+    }
+
+    @Test
+    void testSameLanguage() {
+        List<String> activities = Arrays.asList("a", "b", "c", "x", "y");
+        // response(a, b), init(a) with two sinks, and existence(c) reset by any other activity
+        List<AutomatonTemplate> templates = Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,2", "0,00,1", "0,01,3")),
+                        new HashSet<>(Arrays.asList(0, 1, 2, 3)), 0, new HashSet<>(Collections.singletonList(2))),
+                new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                        new HashSet<>(Arrays.asList("0,1,1", "1,0,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))));
+        Set<Automaton<String>> wildcard = GeneralEncodingWildcard.instantiate(templates);
+        List<CompiledAutomaton<String>> expanded = new ArrayList<>();
+        for (AutomatonTemplate at : templates) {
+            expanded.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)).compile());
+        }
+        Trace t = new Trace("t");
+        t.setTrace_alphabet(Arrays.asList("a", "x"));
+        String problem = new GeneralEncodingWildcard("general-wildcard", new HashSet<>(activities),
+                t.computeTraceAutomaton(), wildcard, true).generateProblemString(0).toString();
+        assertFalse(problem.contains(GeneralEncodingWildcard.OTHER));
+        assertTrue(problem.contains("y - activity"));
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            List<String> word = new ArrayList<>();
+            for (int j = random.nextInt(8); j > 0; j--) {
+                word.add(activities.get(random.nextInt(activities.size())));
+            }
+            boolean all = expanded.stream().allMatch(a -> a.accepts(word));
+            assertEquals(all, accepts(problem, word), word.toString());
+        }
+    }
+}
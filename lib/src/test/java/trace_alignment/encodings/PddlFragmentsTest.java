@@ -0,0 +1,76 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+import trace_alignment.automaton.TraceAutomaton;
+import trace_alignment.utils.Trace;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PddlFragmentsTest {
+
+    private TraceAutomaton<String> trace(String name, String... activities) {
+        Trace t = new Trace(name);
+        t.setTrace_alphabet(Arrays.asList(activities));
+        return t.computeTraceAutomaton();
+    }
+
+    private List<AbstractEncoding> encodings(HashSet<String> activities, TraceAutomaton<String> ta,
+                                             Set<Automaton<String>> constraint) {
+        return Arrays.asList(new GeneralEncoding("general", activities, ta, constraint, true),
+                new GeneralEncodingConjunctiveGoal("general-conj", activities, ta, constraint, true),
+                new GeneralEncodingShareStates("general-share", activities, ta, constraint, true),
+                new GeneralEncodingConjGoalAndShareStates("general-conj-share", activities, ta, constraint, true));
+    }
+
+    @Test
+    void testSplicedProblems() {
+        HashSet<String> activities = new HashSet<>(Arrays.asList("a", "b", "c"));
+        // response(a, b) and existence(c)
+        List<AutomatonTemplate> templates = Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                        new HashSet<>(Collections.singletonList("0,1,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))));
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+        }
+        PddlFragments fragments = new PddlFragments(constraint, activities);
+        int trace_id = 0;
+        for (TraceAutomaton<String> ta : Arrays.asList(trace("t1", "a", "c"), trace("t2", "b", "b", "a"))) {
+            List<AbstractEncoding> own = encodings(activities, ta, constraint);
+            List<AbstractEncoding> shared = encodings(activities, ta, constraint);
+            for (int i = 0; i < own.size(); i++) {
+                shared.get(i).setFragments(fragments);
+                assertEquals(own.get(i).generateProblemString(trace_id).toString(),
+                        shared.get(i).generateProblemString(trace_id).toString());
+            }
+            trace_id++;
+        }
+        // objects, init and goal, plus the automata objects of the two encodings sharing states
+        assertEquals(14, fragments.size());
+
+        AbstractEncoding other = encodings(new HashSet<>(activities), trace("t3", "a"), constraint).get(0);
+        assertThrows(IllegalArgumentException.class, () -> other.setFragments(fragments));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PddlWriterTest {
+
+    private String write(PddlWriter w, ThrowingConsumer body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PddlWriter pw = w.open(Channels.newChannel(out))) {
+            body.accept(pw);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private interface ThrowingConsumer {
+        void accept(PddlWriter w) throws IOException;
+    }
+
+    @Test
+    void testTokens() throws IOException {
+        PddlWriter w = new PddlWriter();
+        assertEquals("(cur_state s_12_3) (trace t0 a_complete t1) -42 0 x",
+                write(w, pw -> pw.append("(cur_state ").state("12", "3").append(") (trace t").append(0).append(' ')
+                        .id("a_complete").append(" t").append(1).append(") ").append(-42).append(' ').append(0)
+                        .append(" x")));
+    }
+
+    @Test
+    void testNonAscii() throws IOException {
+        PddlWriter w = new PddlWriter();
+        assertEquals("attivit\u00e0_\u00e9 \u00fc",
+                write(w, pw -> pw.append("attivit\u00e0_").id("\u00e9").append(' ').append('\u00fc')));
+    }
+
+    @Test
+    void testSmallBuffer() throws IOException {
+        PddlWriter w = new PddlWriter(ByteBuffer.allocate(8));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            expected.append("(sync-activity_").append(i).append(")\n");
+        }
+        assertEquals(expected.toString(), write(w, pw -> {
+            for (int i = 0; i < 1000; i++) {
+                pw.append("(sync-").id("activity_").append(i).append(")\n");
+            }
+        }));
+    }
+
+    @Test
+    void testReuse() throws IOException {
+        PddlWriter w = new PddlWriter(ByteBuffer.allocate(16));
+        File domain = File.createTempFile("domain", ".pddl");
+        File problem = File.createTempFile("problem", ".pddl");
+        domain.deleteOnExit();
+        problem.deleteOnExit();
+        Files.write(problem.toPath(), "a longer content, to be truncated".getBytes(StandardCharsets.UTF_8));
+        try (PddlWriter pw = w.open(domain)) {
+            pw.append("(define (domain alignment))");
+        }
+        try (PddlWriter pw = w.open(problem)) {
+            pw.append("(define (problem p-trace-").append(7).append("))");
+        }
+        assertEquals("(define (domain alignment))",
+                new String(Files.readAllBytes(domain.toPath()), StandardCharsets.UTF_8));
+        assertEquals("(define (problem p-trace-7))",
+                new String(Files.readAllBytes(problem.toPath()), StandardCharsets.UTF_8));
+    }
+}
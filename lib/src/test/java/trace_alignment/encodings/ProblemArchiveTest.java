@@ -0,0 +1,97 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProblemArchiveTest {
+
+    @Test
+    void testWriteAndRead() throws Exception {
+        File directory = Files.createTempDirectory("archive").toFile();
+        directory.deleteOnExit();
+        assertFalse(ProblemArchive.exists(directory));
+        // segments of 16 bytes: every problem but the small ones opens a new segment
+        try (ProblemArchive archive = new ProblemArchive(directory, 16)) {
+            archive.add("p-0.pddl", "(define (problem p-trace-0))".getBytes(StandardCharsets.UTF_8));
+            archive.add("p-1.pddl", "(p1)".getBytes(StandardCharsets.UTF_8));
+            archive.add("p-2.pddl", "(p2)".getBytes(StandardCharsets.UTF_8));
+            archive.add("p-3.pddl", new byte[0]);
+            archive.add("p-4.pddl", "(define (problem p-trace-4))".getBytes(StandardCharsets.UTF_8));
+            assertEquals(5, archive.size());
+        }
+        assertTrue(ProblemArchive.exists(directory));
+        assertTrue(new File(directory, "problems-2.dat").isFile());
+        assertFalse(new File(directory, "problems-3.dat").exists());
+
+        ProblemArchive.Reader reader = new ProblemArchive.Reader(directory);
+        assertEquals(Arrays.asList("p-0.pddl", "p-1.pddl", "p-2.pddl", "p-3.pddl", "p-4.pddl"),
+                new ArrayList<>(reader.getNames()));
+        assertEquals("(define (problem p-trace-0))", reader.getString("p-0.pddl"));
+        assertEquals("(p1)", reader.getString("p-1.pddl"));
+        assertEquals("(p2)", reader.getString("p-2.pddl"));
+        assertEquals("", reader.getString("p-3.pddl"));
+        assertEquals("(define (problem p-trace-4))", reader.getString("p-4.pddl"));
+        assertNull(reader.get("p-5.pddl"));
+
+        File extracted = new File(directory, "p-2.pddl");
+        reader.extract("p-2.pddl", extracted);
+        assertEquals("(p2)", new String(Files.readAllBytes(extracted.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testStreamedEntries() throws Exception {
+        File directory = Files.createTempDirectory("archive").toFile();
+        directory.deleteOnExit();
+        try (ProblemArchive archive = new ProblemArchive(directory, 16)) {
+            // nothing written yet, the archive is not locked: another thread adds its problem meanwhile
+            WritableByteChannel entry = archive.open("p-1.pddl");
+            Thread other = new Thread(() -> {
+                try {
+                    archive.add("p-0.pddl", "(p0)".getBytes(StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            other.start();
+            other.join();
+            // drained by a 4-byte buffer, p-1 outgrows the first segment and is moved to a new one
+            try (PddlWriter w = new PddlWriter(ByteBuffer.allocate(4)).open(entry)) {
+                w.append("(define (problem p-trace-1))");
+            }
+            assertFalse(entry.isOpen());
+            archive.open("p-2.pddl").close();
+            assertEquals(3, archive.size());
+        }
+        assertEquals(4, new File(directory, "problems-0.dat").length());
+        assertEquals(28, new File(directory, "problems-1.dat").length());
+
+        ProblemArchive.Reader reader = new ProblemArchive.Reader(directory);
+        assertEquals(Arrays.asList("p-0.pddl", "p-1.pddl", "p-2.pddl"), new ArrayList<>(reader.getNames()));
+        assertEquals("(p0)", reader.getString("p-0.pddl"));
+        assertEquals("(define (problem p-trace-1))", reader.getString("p-1.pddl"));
+        assertEquals("", reader.getString("p-2.pddl"));
+    }
+}
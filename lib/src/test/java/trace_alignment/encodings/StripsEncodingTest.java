@@ -0,0 +1,66 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.encodings;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+import trace_alignment.utils.Trace;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripsEncodingTest {
+
+    private Trace trace(String name, String... activities) {
+        Trace t = new Trace(name);
+        t.setTrace_alphabet(Arrays.asList(activities));
+        return t;
+    }
+
+    @Test
+    void testSharedCore() {
+        HashSet<String> activities = new HashSet<>(Arrays.asList("a", "b", "c"));
+        // response(a, b) and existence(c)
+        List<AutomatonTemplate> templates = Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                        new HashSet<>(Collections.singletonList("0,1,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))));
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+        }
+        StripsDomainCore core = new StripsDomainCore(constraint, new ArrayList<>());
+        for (Trace t : Arrays.asList(trace("t1", "a", "c"), trace("t2", "b", "b", "a"))) {
+            String shared = new StripsEncoding("strips-conj", activities, t.computeTraceAutomaton(), constraint, core,
+                    false).generateDomainString().toString();
+            String own = new StripsEncoding("strips-conj", activities, t.computeTraceAutomaton(), constraint,
+                    new ArrayList<>(), false).generateDomainString().toString();
+            assertEquals(own, shared);
+        }
+        String domain = new StripsEncoding("strips-conj", activities, trace("t1", "a", "c").computeTraceAutomaton(),
+                constraint, core, false).generateDomainString().toString();
+        // a sync action for every combination labelled by a trace activity, none for b
+        assertTrue(domain.contains("(:action add-b-c"));
+        assertFalse(domain.contains("(:action sync-b-c"));
+        assertTrue(domain.contains("(:action sync-a-c"));
+        assertTrue(domain.contains("(:action sync-c-c"));
+        assertTrue(domain.contains("(:action sync-c-t1t2"));
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.parsing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityNormalizerTest {
+
+    @Test
+    void testMemoizedNormalization() {
+        ActivityNormalizer normalizer = new ActivityNormalizer();
+        String a = normalizer.activity("Register (A)", "COMPLETE");
+        assertEquals("registera_complete", a);
+        assertSame(a, normalizer.activity("Register (A)", "COMPLETE"));
+        assertSame(a, normalizer.activity(new String("Register (A)"), null));
+        assertSame(a, normalizer.intern(new String("registera_complete")));
+        String b = normalizer.activity("check-in", "start");
+        assertEquals("check_in_start", b);
+
+        assertEquals(2, normalizer.size());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.parsing;
+
+import trace_alignment.utils.Trace;
+import org.apache.commons.io.FileUtils;
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.extension.std.XLifecycleExtension;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStreamReaderTest {
+    private final String LOG_PATH = getClass().getClassLoader().getResource("financial_log_for_experiments.xes").getPath();
+
+    private void assertSameTraces(String logPath) throws Exception {
+        XLog log = ParseLog.openLog(logPath);
+        try (LogStreamReader reader = new LogStreamReader(logPath)) {
+            for (XTrace trace : log) {
+                assertTrue(reader.hasNext());
+                Trace t = reader.next();
+                assertEquals(XConceptExtension.instance().extractName(trace), t.getName());
+                List<String> expected = new ArrayList<>();
+                for (XEvent event : trace) {
+                    expected.add(ParseLog.normalizeActivity(XConceptExtension.instance().extractName(event),
+                            XLifecycleExtension.instance().extractTransition(event)));
+                }
+                assertEquals(expected, t.getTrace_alphabet());
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testSameTracesAsOpenXES() throws Exception {
+        assertSameTraces(LOG_PATH);
+    }
+
+    @Test
+    void testGzippedLog() throws Exception {
+        File gz = File.createTempFile("log", ".xes.gz");
+        gz.deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+            Files.copy(Paths.get(LOG_PATH), out);
+        }
+        assertSameTraces(gz.getPath());
+    }
+
+    @Test
+    void testMxmlLog() throws Exception {
+        File mxml = File.createTempFile("log", ".mxml");
+        mxml.deleteOnExit();
+        FileUtils.writeStringToFile(mxml, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<WorkflowLog>\n" +
+                "<Process id=\"p\">\n" +
+                "<ProcessInstance id=\"case 1\">\n" +
+                "<AuditTrailEntry><WorkflowModelElement>Register (A)</WorkflowModelElement>" +
+                "<EventType>complete</EventType></AuditTrailEntry>\n" +
+                "<AuditTrailEntry><Data><Attribute name=\"x\">1</Attribute></Data>" +
+                "<WorkflowModelElement>check-in</WorkflowModelElement>" +
+                "<EventType>start</EventType></AuditTrailEntry>\n" +
+                "</ProcessInstance>\n" +
+                "<ProcessInstance id=\"case 2\">\n" +
+                "</ProcessInstance>\n" +
+                "</Process>\n" +
+                "</WorkflowLog>\n", "UTF-8");
+        try (LogStreamReader reader = new LogStreamReader(mxml.getPath())) {
+            Trace first = reader.next();
+            assertEquals("case 1", first.getName());
+            assertEquals(Arrays.asList("registera_complete", "check_in_start"), first.getTrace_alphabet());
+            Trace second = reader.next();
+            assertEquals("case 2", second.getName());
+            assertTrue(second.getTrace_alphabet().isEmpty());
+            assertFalse(reader.hasNext());
+        }
+    }
+}
@@ -18,7 +18,10 @@ import trace_alignment.automaton.*;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 
@@ -107,4 +110,36 @@ class ParseLydiaDFATest {
         Assertions.assertEquals(expected, response_actual);
     }
 
-}
\ No newline at end of file
+    @Test
+    void parseMONAprintText() throws IOException {
+        String dfa = "DFA for formula with free variables: a b d \n" +
+                "Initial state: 0\n" +
+                "Accepting states: 1 \n" +
+                "Rejecting states: 0 2 3 \n" +
+                "\n" +
+                "Automaton has 4 state(s) and 7 BDD-node(s)\n" +
+                "Transitions:\n" +
+                "State 0: X0X -> state 1\n" +
+                "State 0: X10 -> state 2\n" +
+                "State 0: X11 -> state 3\n" +
+                "State 1: XXX -> state 1\n" +
+                "State 2: X0X -> state 1\n" +
+                "State 2: X1X -> state 2\n" +
+                "State 3: 00X -> state 1\n" +
+                "State 3: 01X -> state 2\n" +
+                "State 3: 1XX -> state 1\n";
+
+        List<String> al = Arrays.asList("a", "b", "d");
+        Set<String> ts = new HashSet<>(Arrays.asList("0,000,1", "0,100,1", "0,001,1", "0,010,2", "2,000,1",
+                "2,100,1", "2,001,1", "3,000,1", "3,001,1", "3,010,2", "3,100,1"));
+        Set<Integer> ss = new HashSet<>(Arrays.asList(0, 1, 2, 3));
+        Set<Integer> acc = new HashSet<>(Collections.singletonList(1));
+        AutomatonTemplate expected = new AutomatonTemplate(al, ts, ss, 0, acc);
+
+        Assertions.assertEquals(expected, ParseLydiaDFA.parseMONAprint(dfa));
+        Assertions.assertEquals(expected,
+                ParseLydiaDFA.parseMONAprint(new ByteArrayInputStream(dfa.getBytes(StandardCharsets.UTF_8))));
+        Assertions.assertThrows(UncheckedIOException.class, () -> ParseLydiaDFA.parseMONAprint("syntax error\n"));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.alignment.AlignmentEngine;
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityClassesTest {
+
+    private List<AutomatonTemplate> templates() {
+        // response(a, b), existence(c) reset by any other activity, and d or e once, which behave the same
+        return Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                        new HashSet<>(Arrays.asList("0,1,1", "1,0,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))),
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("d", "e")),
+                        new HashSet<>(Arrays.asList("0,10,1", "0,01,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))));
+    }
+
+    private Set<Automaton<String>> instantiate(List<AutomatonTemplate> templates, Set<String> activities) {
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+        }
+        return constraint;
+    }
+
+    @Test
+    void testClasses() {
+        ActivityClasses classes = new ActivityClasses(templates());
+        List<String> activities = Arrays.asList("a", "b", "c", "d", "e", "x", "y", "z");
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "x")), classes.getRepresentatives(activities));
+        assertEquals(5, classes.size());
+        assertEquals("x", classes.getRepresentative("z"));
+        assertEquals("d", classes.getRepresentative("e"));
+        Trace t = new Trace("t");
+        t.setTrace_alphabet(Arrays.asList("y", "a", "e"));
+        assertEquals(Arrays.asList("x", "a", "d"), classes.map(t).getTrace_alphabet());
+        assertEquals(Arrays.asList("y", "a", "e"), t.getTrace_alphabet());
+    }
+
+    @Test
+    void testSameCosts() {
+        List<AutomatonTemplate> templates = templates();
+        ActivityClasses classes = new ActivityClasses(templates);
+        List<String> activities = Arrays.asList("a", "b", "c", "d", "e", "x", "y", "z");
+        AlignmentEngine full = new AlignmentEngine(instantiate(templates, new HashSet<>(activities)));
+        AlignmentEngine reduced = new AlignmentEngine(instantiate(templates, classes.getRepresentatives(activities)));
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            Trace t = new Trace("t" + i);
+            List<String> events = new ArrayList<>();
+            for (int j = random.nextInt(7); j > 0; j--) {
+                events.add(activities.get(random.nextInt(activities.size())));
+            }
+            t.setTrace_alphabet(events);
+            assertEquals(full.align(events).getCost(), reduced.align(classes.map(t).getTrace_alphabet()).getCost(),
+                    events.toString());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.alignment.Alignment;
+import trace_alignment.alignment.AlignmentEngine;
+import trace_alignment.alignment.Move;
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlphabetComponentsTest {
+
+    private List<AutomatonTemplate> templates() {
+        // response(a, b), response(b, c) and d or e once: {a, b, c} and {d, e} are independent
+        return Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("d", "e")),
+                        new HashSet<>(Arrays.asList("0,10,1", "0,01,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))),
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("b", "c")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))));
+    }
+
+    private Set<Automaton<String>> instantiate(Collection<AutomatonTemplate> templates, Set<String> activities) {
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+        }
+        return constraint;
+    }
+
+    @Test
+    void testComponents() {
+        AlphabetComponents components = new AlphabetComponents(templates());
+        assertTrue(components.isIndependent());
+        assertEquals(2, components.size());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), components.getAlphabet(0));
+        assertEquals(2, components.getTemplates(0).size());
+        assertEquals(new HashSet<>(Arrays.asList("d", "e")), components.getAlphabet(1));
+        assertEquals(-1, components.getComponent("x"));
+        Trace t = new Trace("t");
+        t.setTrace_alphabet(Arrays.asList("d", "a", "x", "c", "e"));
+        assertEquals(Arrays.asList("a", "c"), components.project(t, 0).getTrace_alphabet());
+        assertEquals(Arrays.asList("d", "e"), components.project(t, 1).getTrace_alphabet());
+    }
+
+    @Test
+    void testNotIndependent() {
+        List<AutomatonTemplate> templates = new ArrayList<>(templates());
+        // existence(f) reset by any other activity
+        templates.add(new AutomatonTemplate(new ArrayList<>(Collections.singletonList("f")),
+                new HashSet<>(Arrays.asList("0,1,1", "1,0,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(1))));
+        AlphabetComponents components = new AlphabetComponents(templates);
+        assertFalse(components.isIndependent());
+        assertEquals(3, components.size());
+    }
+
+    @Test
+    void testSameCosts() {
+        List<AutomatonTemplate> templates = templates();
+        AlphabetComponents components = new AlphabetComponents(templates);
+        List<String> activities = Arrays.asList("a", "b", "c", "d", "e", "x");
+        AlignmentEngine full = new AlignmentEngine(instantiate(templates, new HashSet<>(activities)));
+        List<AlignmentEngine> engines = new ArrayList<>();
+        for (int c = 0; c < components.size(); c++) {
+            engines.add(new AlignmentEngine(instantiate(components.getTemplates(c), components.getAlphabet(c))));
+        }
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            Trace t = new Trace("t" + i);
+            List<String> events = new ArrayList<>();
+            for (int j = random.nextInt(8); j > 0; j--) {
+                events.add(activities.get(random.nextInt(activities.size())));
+            }
+            t.setTrace_alphabet(events);
+            List<Alignment> parts = new ArrayList<>();
+            for (int c = 0; c < components.size(); c++) {
+                parts.add(engines.get(c).align(components.project(t, c).getTrace_alphabet()));
+            }
+            Alignment a = Alignment.merge(t.getName(), -1, events, parts, components::getComponent);
+            assertEquals(full.align(events).getCost(), a.getCost(), events.toString());
+            int cost = 0;
+            List<String> aligned = new ArrayList<>();
+            for (Move m : a.getMoves()) {
+                cost += m.getCost();
+                if (m.getType() != Move.Type.ADD) {
+                    aligned.add(m.getActivity());
+                }
+            }
+            assertEquals(a.getCost(), cost);
+            assertEquals(events, aligned);
+        }
+    }
+}
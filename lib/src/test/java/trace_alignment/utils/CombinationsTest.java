@@ -0,0 +1,78 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.automaton.State;
+import trace_alignment.automaton.Transition;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CombinationsTest {
+
+    private State state(String name, String automaton) {
+        State s = new State(name, false, true);
+        s.setAutomatonId(automaton);
+        return s;
+    }
+
+    private List<List<String>> names(Iterator<List<State>> it) {
+        List<List<String>> result = new ArrayList<>();
+        it.forEachRemaining(c -> {
+            List<String> names = new ArrayList<>();
+            c.forEach(s -> names.add(s.getName()));
+            result.add(names);
+        });
+        return result;
+    }
+
+    @Test
+    void testDistinctAutomata() {
+        List<State> l = Arrays.asList(state("0", "a"), state("1", "a"), state("2", "b"), state("3", "c"));
+        assertEquals(Arrays.asList(Arrays.asList("0", "2"), Arrays.asList("0", "3"), Arrays.asList("1", "2"),
+                        Arrays.asList("1", "3"), Arrays.asList("2", "3")),
+                names(Combinations.distinctAutomata(l, 2, s -> true)));
+        assertEquals(Arrays.asList(Arrays.asList("0", "2", "3"), Arrays.asList("1", "2", "3")),
+                names(Combinations.distinctAutomata(l, 3, s -> true)));
+        assertEquals(Collections.emptyList(), names(Combinations.distinctAutomata(l, 4, s -> true)));
+        assertEquals(Collections.singletonList(Arrays.asList("1", "3")),
+                names(Combinations.distinctAutomata(l, 2, s -> !s.getName().equals("0") && !s.getName().equals("2"))));
+    }
+
+    @Test
+    void testCombinationOfStates() {
+        List<State> l = Arrays.asList(state("0", "a"), state("1", "a"), state("2", "b"));
+        List<CombinationOfStates> combStates = Combinations.combinationsOfStates(l, 2, new HashSet<>());
+        assertEquals(2, combStates.size());
+        assertEquals(new CombinationOfStates(new HashSet<>(Arrays.asList(l.get(0), l.get(2))), new HashSet<>(),
+                new HashSet<>(Arrays.asList("a", "b"))), combStates.get(0));
+        assertNotEquals(combStates.get(0), combStates.get(1));
+    }
+
+    @Test
+    void testTransitions() {
+        State sink = state("ink", "b");
+        List<Transition<String>> l = Arrays.asList(new Transition<>(state("0", "a"), "x", state("1", "a")),
+                new Transition<>(state("0", "b"), "x", sink), new Transition<>(state("0", "c"), "x", state("1", "c")));
+        l.forEach(t -> t.setAutomatonId(t.getInputState().getAutomatonId()));
+        Iterator<CombinationOfTransitions> it = Combinations.transitions("x", l, 2);
+        CombinationOfTransitions ct = it.next();
+        assertFalse(it.hasNext());
+        assertEquals(new HashSet<>(Arrays.asList(l.get(0), l.get(2))), ct.getInTransitions());
+        assertEquals(Collections.singleton(l.get(1)), ct.getOutTransitions());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import org.junit.jupiter.api.Test;
+import trace_alignment.alignment.Alignment;
+import trace_alignment.alignment.AlignmentEngine;
+import trace_alignment.alignment.Move;
+import trace_alignment.automaton.Automaton;
+import trace_alignment.automaton.AutomatonTemplate;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceProjectionTest {
+
+    private List<AutomatonTemplate> templates() {
+        // response(a, b) and d or e once, the other activities never move them
+        return Arrays.asList(
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("a", "b")),
+                        new HashSet<>(Arrays.asList("0,10,1", "1,01,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(0))),
+                new AutomatonTemplate(new ArrayList<>(Arrays.asList("d", "e")),
+                        new HashSet<>(Arrays.asList("0,10,1", "0,01,1")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                        new HashSet<>(Collections.singletonList(1))));
+    }
+
+    private Set<Automaton<String>> instantiate(List<AutomatonTemplate> templates, Set<String> activities) {
+        Set<Automaton<String>> constraint = new HashSet<>();
+        for (AutomatonTemplate at : templates) {
+            constraint.add(at.computeAutomatonWithDeadEnds(new HashSet<>(activities)));
+        }
+        return constraint;
+    }
+
+    @Test
+    void testProject() {
+        TraceProjection projection = new TraceProjection(templates());
+        assertTrue(projection.isEnabled());
+        assertTrue(projection.isIdle("x"));
+        assertFalse(projection.isIdle("e"));
+        Trace t = new Trace("t");
+        t.setTrace_alphabet(Arrays.asList("x", "a", "y", "e", "x"));
+        Trace projected = projection.project(t);
+        assertEquals("t", projected.getName());
+        assertEquals(Arrays.asList("a", "e"), projected.getTrace_alphabet());
+        assertEquals(3, projection.getNbDropped());
+    }
+
+    @Test
+    void testDisabled() {
+        List<AutomatonTemplate> templates = new ArrayList<>(templates());
+        // existence(c) reset by any other activity
+        templates.add(new AutomatonTemplate(new ArrayList<>(Collections.singletonList("c")),
+                new HashSet<>(Arrays.asList("0,1,1", "1,0,0")), new HashSet<>(Arrays.asList(0, 1)), 0,
+                new HashSet<>(Collections.singletonList(1))));
+        TraceProjection projection = new TraceProjection(templates);
+        assertFalse(projection.isEnabled());
+        assertFalse(projection.isIdle("x"));
+        Trace t = new Trace("t");
+        t.setTrace_alphabet(Arrays.asList("x", "c", "x"));
+        assertEquals(Arrays.asList("x", "c", "x"), projection.project(t).getTrace_alphabet());
+    }
+
+    @Test
+    void testSameCosts() {
+        List<AutomatonTemplate> templates = templates();
+        TraceProjection projection = new TraceProjection(templates);
+        List<String> activities = Arrays.asList("a", "b", "d", "e", "x", "y");
+        AlignmentEngine engine = new AlignmentEngine(instantiate(templates, new HashSet<>(activities)));
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Trace t = new Trace("t" + i);
+            List<String> events = new ArrayList<>();
+            for (int j = random.nextInt(8); j > 0; j--) {
+                events.add(activities.get(random.nextInt(activities.size())));
+            }
+            t.setTrace_alphabet(events);
+            Alignment a = engine.align(projection.project(t).getTrace_alphabet());
+            assertEquals(engine.align(events).getCost(), a.getCost(), events.toString());
+            List<String> restored = new ArrayList<>();
+            for (Move m : a.onEvents(events, projection::isIdle).getMoves()) {
+                if (m.getType() != Move.Type.ADD) {
+                    restored.add(m.getActivity());
+                }
+            }
+            assertEquals(events, restored);
+        }
+    }
+}
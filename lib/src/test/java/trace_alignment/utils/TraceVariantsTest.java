@@ -0,0 +1,48 @@
+/*
+ *  
+ *  Copyright 2021-2023 WhiteMech
+ *  
+ *  ------------------------------
+ *  
+ *  This file is part of Trace-Alignment.
+ *
+ *  Use of this source code is governed by an MIT-style
+ *  license that can be found in the LICENSE file or at
+ *  https://opensource.org/licenses/MIT.
+ *
+ */
+
+package trace_alignment.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceVariantsTest {
+
+    private Trace trace(String name, String... activities) {
+        Trace t = new Trace(name);
+        t.setTrace_alphabet(Arrays.asList(activities));
+        return t;
+    }
+
+    @Test
+    void testGroupByActivitySequence() {
+        TraceVariants variants = new TraceVariants();
+        assertEquals(0, variants.add(trace("t0", "a", "b", "c")));
+        assertEquals(1, variants.add(trace("t1", "a", "c", "b")));
+        assertEquals(0, variants.add(trace("t2", "a", "b", "c")));
+        assertEquals(2, variants.add(trace("t3")));
+        assertEquals(0, variants.add(trace("t4", "a", "b", "c")));
+
+        assertEquals(3, variants.size());
+        assertEquals(5, variants.getNbTraces());
+        assertEquals(3, variants.getMultiplicity(0));
+        assertEquals(1, variants.getMultiplicity(1));
+        assertEquals(Arrays.asList("t0", "t2", "t4"), variants.getMembers(0));
+        assertEquals("t1", variants.getRepresentative(1).getName());
+        assertTrue(variants.getRepresentative(2).getTrace_alphabet().isEmpty());
+    }
+}